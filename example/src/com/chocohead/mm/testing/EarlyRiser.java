@@ -9,23 +9,18 @@ package com.chocohead.mm.testing;
 
 import com.chocohead.mm.api.ClassTinkerers;
 
-import net.fabricmc.loader.api.FabricLoader;
-import net.fabricmc.loader.api.MappingResolver;
-
 import net.minecraft.item.ItemStack;
 
 public class EarlyRiser implements Runnable {
 	@Override
 	public void run() {
-		MappingResolver remapper = FabricLoader.getInstance().getMappingResolver();
-
-		String bannerPattern = remapper.mapClassName("intermediary", "net.minecraft.class_2582");
+		String bannerPattern = ClassTinkerers.mapClass("net.minecraft.class_2582");
 		ClassTinkerers.enumBuilder(bannerPattern, String.class, String.class).addEnum("TEST_PATTERN", "amazing_test", "test").build();
 
-		String itemstack = 'L' + remapper.mapClassName("intermediary", "net.minecraft.class_1799") + ';';
+		String itemstack = 'L' + ClassTinkerers.mapClass("net.minecraft.class_1799") + ';';
 		ClassTinkerers.enumBuilder(bannerPattern, "Ljava/lang/String;", "Ljava/lang/String;", itemstack).addEnum("TEST_PATTERN_2", () -> new Object[] {"flawless_test", "t3st", ItemStack.EMPTY}).build();
 
-		String clickEventAction = remapper.mapClassName("intermediary", "net.minecraft.class_2558$class_2559");
+		String clickEventAction = ClassTinkerers.mapClass("net.minecraft.class_2558$class_2559");
 		ClassTinkerers.enumBuilder(clickEventAction, String.class, boolean.class).addEnum("TEST_COMMAND", "test_command", true).build();
 
 		ClassTinkerers.enumBuilder("com.chocohead.mm.testing.TestEnum", long.class, int[].class).addEnum("TEST", 0L, new int[0]).build();
@@ -33,7 +28,7 @@ public class EarlyRiser implements Runnable {
 		ClassTinkerers.enumBuilder("com.chocohead.mm.testing.TestEnum", double.class, double.class).addEnum("TEST_AS_WELL", 1D, 0D).build();
 		ClassTinkerers.enumBuilder("com.chocohead.mm.testing.TestEnum").addEnum("TEST_TOO").addEnumSubclass("TEST_THREE", "com.chocohead.mm.testing.TestEnumExtension").build();
 
-		String enchantmentTarget = remapper.mapClassName("intermediary", "net.minecraft.class_1886");
+		String enchantmentTarget = ClassTinkerers.mapClass("net.minecraft.class_1886");
 		ClassTinkerers.enumBuilder(enchantmentTarget).addEnumSubclass("CAKE", "com.chocohead.mm.testing.LetThemEnchantCake").build();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.harness;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin;
+import org.spongepowered.asm.mixin.transformer.ext.Extensions;
+
+/**
+ * Runs MM's loading phases without a game, against each of the given numbers of {@link SyntheticMods}: {@code onLoad},
+ * {@code getMixins}, then {@code preApply} (and {@code postApply}) for every class the mods have MM change. Reports how
+ * long each phase took, how much it allocated on the thread which ran it, and how much more of the heap it retains.
+ *
+ * <p>Each run has its own copy of MM, so starts as cold as a game launch would.
+ */
+public final class Harness {
+	/** Stands in for Mixin's transformer, which MM only needs the extensions of */
+	private static final class Transformer {
+		@SuppressWarnings("unused")
+		private final Extensions extensions = new Extensions(null);
+	}
+	private interface Phase {
+		void run() throws Exception;
+	}
+	/** As given in {@code mixins.mm.json} */
+	private static final String MIXIN_PACKAGE = "com.chocohead.gen.mixin.";
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private Harness() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] counts = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] {10, 100, 500, 1000, 2000};
+
+		for (int count : counts) {
+			Path gameDir = Files.createTempDirectory("mm-harness");
+			try {
+				run(count, gameDir);
+			} finally {
+				try (Stream<Path> files = Files.walk(gameDir)) {
+					for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+						Files.delete(file);
+					}
+				}
+			}
+		}
+	}
+
+	private static void run(int count, Path gameDir) throws IOException, ReflectiveOperationException {
+		SyntheticMods mods = new SyntheticMods(count, gameDir);
+		mods.install();
+		MixinEnvironment.getCurrentEnvironment().setActiveTransformer(new Transformer());
+		System.out.println(count + " mods:");
+
+		IMixinConfigPlugin plugin = (IMixinConfigPlugin) Class.forName("com.chocohead.mm.Plugin", true, mods.loader).newInstance();
+		phase("onLoad", () -> plugin.onLoad(MIXIN_PACKAGE));
+
+		List<String> mixins = new ArrayList<>();
+		phase("getMixins", () -> mixins.addAll(plugin.getMixins()));
+
+		//Mixin reads the classes before MM sees them, so that isn't part of the phase
+		List<ClassNode> targets = new ArrayList<>(mods.targets.size());
+		for (byte[] bytecode : mods.targets.values()) {
+			ClassNode node = new ClassNode();
+			new ClassReader(bytecode).accept(node, ClassReader.EXPAND_FRAMES);
+			targets.add(node);
+		}
+		phase("preApply", () -> {
+			for (ClassNode node : targets) {
+				String name = node.name.replace('/', '.');
+				plugin.preApply(name, node, MIXIN_PACKAGE + "Harness", null);
+				plugin.postApply(name, node, MIXIN_PACKAGE + "Harness", null);
+			}
+		});
+
+		System.out.println(String.format("  Made %d Mixins and added %d URLs, transformed %d classes", mixins.size(), mods.loader.addedURLs.size(), targets.size()));
+	}
+
+	private static void phase(String name, Phase phase) {
+		long heap = retainedHeap();
+		long time = System.nanoTime();
+		long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		try {
+			phase.run();
+		} catch (Exception e) {
+			throw new IllegalStateException("Error running " + name, e);
+		}
+
+		allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+		time = System.nanoTime() - time;
+		heap = retainedHeap() - heap;
+
+		System.out.println(String.format("  %-10s %10.3fms, allocated %9.3fMB, retained %+9.3fMB", name, time / 1_000_000D, allocated / 1_048_576D, heap / 1_048_576D));
+	}
+
+	private static long retainedHeap() {
+		for (int i = 0; i < 3; i++) System.gc(); //Only want what's actually been kept
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.harness;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Stands in for Fabric's mod class loader, loading MM (and the mods' early risers) afresh for each run so nothing carries
+ * over between them. The mods' resources are all held in memory, everything else comes from the harness's classpath.
+ */
+final class InMemoryLoader extends ClassLoader {
+	static {
+		registerAsParallelCapable();
+	}
+	private final Map<String, List<URL>> resources = new HashMap<>();
+	/** The URLs MM has added for its generated classes, which are counted but not loaded as there's no Mixin to apply them */
+	final List<URL> addedURLs = new CopyOnWriteArrayList<>();
+
+	InMemoryLoader(Map<String, List<byte[]>> resources) {
+		super(InMemoryLoader.class.getClassLoader());
+
+		for (Entry<String, List<byte[]>> entry : resources.entrySet()) {
+			List<URL> urls = new ArrayList<>(entry.getValue().size());
+
+			for (byte[] resource : entry.getValue()) {
+				urls.add(makeURL("/mod" + urls.size() + '/' + entry.getKey(), resource));
+			}
+
+			this.resources.put(entry.getKey(), urls);
+		}
+	}
+
+	private static URL makeURL(String path, byte[] resource) {
+		try {
+			return new URL("harness", null, -1, path, new URLStreamHandler() {
+				@Override
+				protected URLConnection openConnection(URL url) {
+					return new URLConnection(url) {
+						@Override
+						public void connect() {
+						}
+
+						@Override
+						public InputStream getInputStream() {
+							return new ByteArrayInputStream(resource);
+						}
+					};
+				}
+			});
+		} catch (MalformedURLException e) {
+			throw new IllegalStateException("Unable to make URL for " + path, e);
+		}
+	}
+
+	/** Found by MM the same way as it finds Fabric's */
+	void addURL(URL url) {
+		addedURLs.add(url);
+	}
+
+	private static boolean isIsolated(String name) {
+		return name.startsWith("com.chocohead.mm.") && (!name.startsWith("com.chocohead.mm.harness.") || name.startsWith("com.chocohead.mm.harness.mod."));
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!isIsolated(name)) return super.loadClass(name, resolve);
+
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> type = findLoadedClass(name);
+			if (type == null) type = findClass(name);
+
+			if (resolve) resolveClass(type);
+			return type;
+		}
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		byte[] bytecode;
+		try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+			if (in == null) throw new ClassNotFoundException(name);
+			bytecode = ByteStreams.toByteArray(in);
+		} catch (IOException e) {
+			throw new ClassNotFoundException(name, e);
+		}
+
+		return defineClass(name, bytecode, 0, bytecode.length);
+	}
+
+	@Override
+	protected URL findResource(String name) {
+		List<URL> urls = resources.get(name);
+		return urls != null ? urls.get(0) : null;
+	}
+
+	@Override
+	protected Enumeration<URL> findResources(String name) {
+		return Collections.enumeration(resources.getOrDefault(name, Collections.emptyList()));
+	}
+}
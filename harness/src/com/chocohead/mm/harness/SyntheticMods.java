@@ -0,0 +1,327 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.MappingResolver;
+import net.fabricmc.loader.api.ModContainer;
+import net.fabricmc.loader.api.metadata.ModMetadata;
+
+import com.chocohead.mm.harness.mod.EarlyRiser;
+
+/**
+ * A game and the given number of mods for it, with each mod having an access transformer for its own game classes, along
+ * with an early riser which adds to its own game enum and defines classes of its own.
+ *
+ * <p>The class files are written to a directory for each mod as MM scans them for the class hierarchy, but otherwise
+ * everything MM reads is served from memory.
+ */
+public final class SyntheticMods implements FabricLoader {
+	/** How many methods each game class has, and how many of them each access transformer changes */
+	private static final int METHODS = 20, TRANSFORMED = 4;
+	/** How many constants each game enum has, and how many each mod adds */
+	private static final int CONSTANTS = 10, ADDITIONS = 5;
+	/** How many classes each mod defines */
+	private static final int DEFINITIONS = 3;
+	private static volatile SyntheticMods current;
+	private final Path gameDir;
+	private final List<ModContainer> mods = new ArrayList<>();
+	private final List<Runnable> earlyRisers = new ArrayList<>();
+	/** The game classes which MM will have been asked to transform, in the order they are transformed */
+	final Map<String, byte[]> targets = new LinkedHashMap<>();
+	final InMemoryLoader loader;
+
+	SyntheticMods(int count, Path gameDir) throws IOException, ReflectiveOperationException {
+		this.gameDir = gameDir;
+
+		Path gameRoot = gameDir.resolve("game");
+		mods.add(makeMod("minecraft", gameRoot));
+		List<byte[]> ats = new ArrayList<>(count);
+		List<Object[]> earlyRisers = new ArrayList<>(count);
+
+		for (int mod = 0; mod < count; mod++) {
+			String type = "game/Class" + mod;
+			String child = "game/Child" + mod;
+			String enumType = "game/Enum" + mod;
+			targets.put(type, makeClass(type));
+			targets.put(child, makeChild(child, type));
+			targets.put(enumType, makeEnum(enumType));
+
+			StringBuilder at = new StringBuilder(type.replace('/', '.')).append('\n');
+			for (int method = 0; method < TRANSFORMED; method++) {
+				at.append(type.replace('/', '.')).append(" m").append(method).append("()V\n");
+			}
+			ats.add(at.toString().getBytes(StandardCharsets.UTF_8));
+
+			String[] additions = new String[ADDITIONS];
+			for (int addition = 0; addition < ADDITIONS; addition++) {
+				additions[addition] = "MOD" + mod + '_' + addition;
+			}
+			Map<String, byte[]> definitions = new HashMap<>();
+			for (int definition = 0; definition < DEFINITIONS; definition++) {
+				String name = "mods/mod" + mod + "/Defined" + definition;
+				definitions.put(name, makeDefinition(name));
+			}
+			earlyRisers.add(new Object[] {enumType, additions, definitions});
+
+			Path root = gameDir.resolve("mods").resolve("mod" + mod);
+			write(root, definitions);
+			mods.add(makeMod("mod" + mod, root));
+		}
+		write(gameRoot, targets);
+
+		loader = new InMemoryLoader(Collections.singletonMap("silky.at", ats));
+		//The early risers need to be made with the run's copy of MM, rather than the harness's
+		Class<? extends Runnable> earlyRiser = Class.forName(EarlyRiser.class.getName(), true, loader).asSubclass(Runnable.class);
+		for (Object[] arguments : earlyRisers) {
+			this.earlyRisers.add(earlyRiser.getConstructor(String.class, String[].class, Map.class).newInstance(arguments));
+		}
+	}
+
+	private static void write(Path root, Map<String, byte[]> classes) throws IOException {
+		for (Entry<String, byte[]> entry : classes.entrySet()) {
+			Path file = root.resolve(entry.getKey() + ".class");
+			Files.createDirectories(file.getParent());
+			Files.write(file, entry.getValue());
+		}
+	}
+
+	private static ModContainer makeMod(String id, Path root) {
+		ModMetadata metadata = (ModMetadata) Proxy.newProxyInstance(SyntheticMods.class.getClassLoader(), new Class<?>[] {ModMetadata.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getId":
+			case "getName":
+			case "toString":
+				return id;
+
+			case "containsCustomValue":
+				return false;
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "equals":
+				return proxy == args[0];
+
+			default:
+				throw new UnsupportedOperationException("Synthetic mods don't have " + method);
+			}
+		});
+
+		return (ModContainer) Proxy.newProxyInstance(SyntheticMods.class.getClassLoader(), new Class<?>[] {ModContainer.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getMetadata":
+				return metadata;
+
+			case "getRootPath":
+				return root;
+
+			case "toString":
+				return id;
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "equals":
+				return proxy == args[0];
+
+			default:
+				throw new UnsupportedOperationException("Synthetic mods don't have " + method);
+			}
+		});
+	}
+
+	/** A class with {@link #METHODS} methods, alternating between private and protected */
+	private static byte[] makeClass(String name) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+		makeConstructor(writer, "java/lang/Object");
+
+		for (int i = 0; i < METHODS; i++) {
+			MethodVisitor method = writer.visitMethod(isPrivate(i) ? Opcodes.ACC_PRIVATE : Opcodes.ACC_PROTECTED, "m" + i, "()V", null, null);
+			method.visitCode();
+			if (i + 1 < METHODS) {//Call the next method, so there are private calls to fix when they're made public
+				method.visitVarInsn(Opcodes.ALOAD, 0);
+				method.visitMethodInsn(isPrivate(i + 1) ? Opcodes.INVOKESPECIAL : Opcodes.INVOKEVIRTUAL, name, "m" + (i + 1), "()V", false);
+			}
+			method.visitInsn(Opcodes.RETURN);
+			method.visitMaxs(0, 0);
+			method.visitEnd();
+		}
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static boolean isPrivate(int method) {
+		return (method & 1) == 0;
+	}
+
+	/** A class overriding the protected methods of the given {@link #makeClass(String)}, which will need widening when they are */
+	private static byte[] makeChild(String name, String parent) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, parent, null);
+		makeConstructor(writer, parent);
+
+		for (int i = 1; i < METHODS; i += 2) {
+			MethodVisitor method = writer.visitMethod(Opcodes.ACC_PROTECTED, "m" + i, "()V", null, null);
+			method.visitCode();
+			method.visitInsn(Opcodes.RETURN);
+			method.visitMaxs(0, 0);
+			method.visitEnd();
+		}
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** An enum with {@link #CONSTANTS} constants, laid out as javac would */
+	private static byte[] makeEnum(String name) {
+		String desc = 'L' + name + ';';
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, name, "Ljava/lang/Enum<" + desc + ">;", "java/lang/Enum", null);
+		for (int i = 0; i < CONSTANTS; i++) {
+			writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "C" + i, desc, null, null).visitEnd();
+		}
+		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, "$VALUES", '[' + desc, null, null).visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[" + desc, null, null);
+		method.visitCode();
+		method.visitFieldInsn(Opcodes.GETSTATIC, name, "$VALUES", '[' + desc);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, '[' + desc, "clone", "()Ljava/lang/Object;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, '[' + desc);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "valueOf", "(Ljava/lang/String;)" + desc, null, null);
+		method.visitCode();
+		method.visitLdcInsn(Type.getObjectType(name));
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Enum", "valueOf", "(Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Enum;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, name);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PRIVATE, "<init>", "(Ljava/lang/String;I)V", "()V", null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitVarInsn(Opcodes.ALOAD, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Enum", "<init>", "(Ljava/lang/String;I)V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		method.visitCode();
+		for (int i = 0; i < CONSTANTS; i++) {
+			method.visitTypeInsn(Opcodes.NEW, name);
+			method.visitInsn(Opcodes.DUP);
+			method.visitLdcInsn("C" + i);
+			method.visitIntInsn(Opcodes.BIPUSH, i);
+			method.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "(Ljava/lang/String;I)V", false);
+			method.visitFieldInsn(Opcodes.PUTSTATIC, name, "C" + i, desc);
+		}
+		method.visitIntInsn(Opcodes.BIPUSH, CONSTANTS);
+		method.visitTypeInsn(Opcodes.ANEWARRAY, name);
+		for (int i = 0; i < CONSTANTS; i++) {
+			method.visitInsn(Opcodes.DUP);
+			method.visitIntInsn(Opcodes.BIPUSH, i);
+			method.visitFieldInsn(Opcodes.GETSTATIC, name, "C" + i, desc);
+			method.visitInsn(Opcodes.AASTORE);
+		}
+		method.visitFieldInsn(Opcodes.PUTSTATIC, name, "$VALUES", '[' + desc);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** An empty class for a mod to define */
+	private static byte[] makeDefinition(String name) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+		makeConstructor(writer, "java/lang/Object");
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static void makeConstructor(ClassWriter writer, String parent) {
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, parent, "<init>", "()V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+
+	/** Makes these the mods {@link FabricLoader#getInstance()} has, until the next are installed */
+	void install() {
+		current = this;
+	}
+
+	public static FabricLoader current() {
+		FabricLoader mods = current;
+		if (mods == null) throw new IllegalStateException("Accessed FabricLoader before any synthetic mods were made");
+		return mods;
+	}
+
+	@Override
+	public <T> List<T> getEntrypoints(String key, Class<T> type) {
+		if (!"mm:early_risers".equals(key)) return Collections.emptyList();
+
+		List<T> out = new ArrayList<>(earlyRisers.size());
+		for (Runnable earlyRiser : earlyRisers) out.add(type.cast(earlyRiser));
+		return out;
+	}
+
+	@Override
+	public MappingResolver getMappingResolver() {
+		throw new UnsupportedOperationException("Synthetic mods are never remapped");
+	}
+
+	@Override
+	public Collection<ModContainer> getAllMods() {
+		return Collections.unmodifiableList(mods);
+	}
+
+	@Override
+	public boolean isDevelopmentEnvironment() {
+		return false;
+	}
+
+	@Override
+	public File getGameDirectory() {
+		return gameDir.toFile();
+	}
+}
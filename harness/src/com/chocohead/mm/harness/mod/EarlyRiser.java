@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.harness.mod;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.chocohead.mm.api.ClassTinkerers;
+import com.chocohead.mm.api.EnumAdder;
+
+/**
+ * The early riser each synthetic mod has, which extends its enum and defines its classes. Loaded alongside each run's
+ * copy of MM, so it uses that rather than the harness's own.
+ */
+public class EarlyRiser implements Runnable {
+	private final String enumName;
+	private final String[] additions;
+	private final Map<String, byte[]> definitions;
+
+	public EarlyRiser(String enumName, String[] additions, Map<String, byte[]> definitions) {
+		this.enumName = enumName;
+		this.additions = additions;
+		this.definitions = definitions;
+	}
+
+	@Override
+	public void run() {
+		EnumAdder builder = ClassTinkerers.enumBuilder(enumName);
+		for (String addition : additions) {
+			builder.addEnum(addition);
+		}
+		builder.build();
+
+		for (Entry<String, byte[]> entry : definitions.entrySet()) {
+			ClassTinkerers.define(entry.getKey(), entry.getValue());
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package net.fabricmc.loader.api;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+
+import com.chocohead.mm.harness.SyntheticMods;
+
+/**
+ * Stands in for Fabric Loader's, whose instance can't be made without launching the game, so that the harness can say
+ * which mods there are. Only what MM uses is here, and the harness has to come before Fabric Loader on the classpath.
+ */
+public interface FabricLoader {
+	static FabricLoader getInstance() {
+		return SyntheticMods.current();
+	}
+
+	<T> List<T> getEntrypoints(String key, Class<T> type);
+
+	MappingResolver getMappingResolver();
+
+	Collection<ModContainer> getAllMods();
+
+	boolean isDevelopmentEnvironment();
+
+	File getGameDirectory();
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.spongepowered.asm.mixin;
+
+/**
+ * Stands in for Mixin's environment, which the harness has no game to make, so that it can provide the transformer MM
+ * adds its extension to. Only what MM uses is here, and the harness has to come before Mixin on the classpath.
+ */
+public final class MixinEnvironment {
+	private static final MixinEnvironment CURRENT = new MixinEnvironment();
+	private volatile Object transformer;
+
+	private MixinEnvironment() {
+	}
+
+	public static MixinEnvironment getCurrentEnvironment() {
+		return CURRENT;
+	}
+
+	public Object getActiveTransformer() {
+		return transformer;
+	}
+
+	public void setActiveTransformer(Object transformer) {
+		this.transformer = transformer;
+	}
+}
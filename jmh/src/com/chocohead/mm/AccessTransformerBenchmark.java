@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * {@link Plugin#makeAT(Set, boolean)} on a class with the given number of methods, half of them private, with an access
+ * transformer of the given number of entries. Entries past the number of methods miss, as they would for an access
+ * transformer made for a different version of the class.
+ *
+ * <p>Each transformation is on a fresh copy of the class, which {@link #copy()} measures on its own to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessTransformerBenchmark {
+	@Param({"10", "100", "1000", "5000"})
+	public int methods;
+	@Param({"1", "10", "100", "1000", "10000"})
+	public int entries;
+	private ClassNode node;
+	private Consumer<ClassNode> transformer;
+
+	@Setup
+	public void setup() {
+		node = SyntheticClasses.makeClass("com/chocohead/mm/SyntheticClass", methods);
+
+		Set<String> transforms = new HashSet<>();
+		for (int i = 0; i < entries; i++) {
+			transforms.add("m" + i + "()V");
+		}
+		transformer = Plugin.makeAT(transforms, false);
+	}
+
+	@Benchmark
+	public ClassNode copy() {
+		return SyntheticClasses.copy(node);
+	}
+
+	@Benchmark
+	public ClassNode transform() {
+		ClassNode copy = SyntheticClasses.copy(node);
+		transformer.accept(copy);
+		MemberIndex.release(copy); //As Plugin#postApply would
+		return copy;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CasualStreamHandler#openConnection(URL)} with the given number of generated classes, both for one of them and
+ * for a class which isn't, as every class the game loads from the mod class loader is looked for this way
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CasualStreamHandlerBenchmark {
+	@Param({"10", "10000"})
+	public int classes;
+	private CasualStreamHandler handler;
+	private URL ours, theirs;
+
+	@Setup
+	public void setup() throws MalformedURLException {
+		Map<String, byte[]> providers = new HashMap<>();
+		for (int i = 0; i < classes; i++) {
+			providers.put("/com/chocohead/mm/Generated" + i + ".class", new byte[0]);
+		}
+
+		handler = new CasualStreamHandler(providers);
+		ours = new URL("magic-at", null, -1, "/com/chocohead/mm/Generated0.class", handler);
+		theirs = new URL("magic-at", null, -1, "/net/minecraft/client/MinecraftClient.class", handler);
+	}
+
+	@Benchmark
+	public URLConnection ours() throws IOException {
+		return handler.openConnection(ours);
+	}
+
+	@Benchmark
+	public URLConnection theirs() throws IOException {
+		return handler.openConnection(theirs);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.objectweb.asm.tree.ClassNode;
+
+import com.chocohead.mm.api.ClassTinkerers;
+import com.chocohead.mm.api.EnumAdder;
+
+/**
+ * {@link EnumExtender#makeEnumExtender(EnumAdder)} adding ten entries to an enum with the given number of constants
+ *
+ * <p>Each transformation is on a fresh copy of the enum, which {@link #copy()} measures on its own to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumExtenderBenchmark {
+	@Param({"5", "50", "500", "5000", "50000"})
+	public int constants;
+	private ClassNode node;
+	private Consumer<ClassNode> extender;
+
+	@Setup
+	public void setup() {
+		node = SyntheticClasses.makeEnum("com/chocohead/mm/SyntheticEnum", constants, 0);
+
+		EnumAdder builder = ClassTinkerers.enumBuilder(node.name);
+		for (int i = 0; i < 10; i++) {
+			builder.addEnum("N" + i);
+		}
+		extender = EnumExtender.makeEnumExtender(builder);
+	}
+
+	@Benchmark
+	public ClassNode copy() {
+		return SyntheticClasses.copy(node);
+	}
+
+	@Benchmark
+	public ClassNode extend() {
+		ClassNode copy = SyntheticClasses.copy(node);
+		extender.accept(copy);
+		MemberIndex.release(copy); //As Plugin#postApply would
+		return copy;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * {@link EnumSubclasser#defineAnonymousSubclass(ClassNode, String, String, String, EnumSubclasser.PreparedSubclass)} for
+ * an enum with the given number of methods, all of which the struct overrides.
+ *
+ * <p>The struct is only fixed the first time, so this measures writing each subclass after that. The enum isn't changed
+ * by writing the subclass, so doesn't need copying each time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumSubclasserBenchmark {
+	private static final String ENUM = "com/chocohead/mm/SyntheticEnum";
+	private static final String MIXIN = "com/chocohead/mm/SyntheticMixin";
+	private static final String STRUCT = "com/chocohead/mm/SyntheticStruct";
+	private static final String CONSTRUCTOR = "(Ljava/lang/String;I)V";
+	@Param({"10", "100", "1000", "5000"})
+	public int methods;
+	private ClassNode node;
+	private MethodHandle define;
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		node = SyntheticClasses.makeEnum(ENUM, 5, methods);
+
+		//The struct and its Mixin are read as resources, so need a class loader which can find them
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put(MIXIN + ".class", SyntheticClasses.makeMixin(MIXIN, ENUM));
+		classes.put(STRUCT + ".class", SyntheticClasses.makeStruct(STRUCT, MIXIN, methods));
+
+		for (Method method : SyntheticClasses.isolate(EnumSubclasser.class.getName(), classes).getDeclaredMethods()) {
+			if ("defineAnonymousSubclass".equals(method.getName())) {
+				method.setAccessible(true);
+				define = MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(byte[].class, ClassNode.class, String.class, String.class, String.class, Object.class));
+				return;
+			}
+		}
+		throw new NoSuchMethodException("Unable to find EnumSubclasser#defineAnonymousSubclass");
+	}
+
+	@Benchmark
+	public byte[] define() throws Throwable {
+		return (byte[]) define.invokeExact(node, STRUCT, ENUM + "$1", CONSTRUCTOR, (Object) null);
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import com.google.common.io.ByteStreams;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/** Makes the classes benchmarks run on, at whatever size they need */
+public final class SyntheticClasses {
+	private static final class Loader extends ClassLoader {
+		Loader() {
+			super(SyntheticClasses.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] bytecode) {
+			return defineClass(name.replace('/', '.'), bytecode, 0, bytecode.length);
+		}
+	}
+
+	private static final class IsolatedLoader extends ClassLoader {
+		private final Map<String, byte[]> resources;
+
+		IsolatedLoader(Map<String, byte[]> resources) {
+			super(SyntheticClasses.class.getClassLoader());
+
+			this.resources = resources;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith("com.chocohead.mm.")) return super.loadClass(name, resolve);
+
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> type = findLoadedClass(name);
+
+				if (type == null) {
+					byte[] bytecode;
+					try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+						if (in == null) throw new ClassNotFoundException(name);
+						bytecode = ByteStreams.toByteArray(in);
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+					type = defineClass(name, bytecode, 0, bytecode.length);
+				}
+
+				if (resolve) resolveClass(type);
+				return type;
+			}
+		}
+
+		@Override
+		public InputStream getResourceAsStream(String name) {
+			byte[] resource = resources.get(name);
+			return resource != null ? new ByteArrayInputStream(resource) : super.getResourceAsStream(name);
+		}
+	}
+
+	private SyntheticClasses() {
+	}
+
+	/**
+	 * Loads the given MM class in a class loader of its own, which can also find the given classes as resources the way
+	 * the mod classes MM reads are found. Each call has its own copy of MM, so nothing is shared between benchmarks.
+	 */
+	public static Class<?> isolate(String name, Map<String, byte[]> classes) {
+		try {
+			return Class.forName(name, true, new IsolatedLoader(classes));
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Unable to isolate " + name, e);
+		}
+	}
+
+	/**
+	 * Loads an enum with the given number of constants, named {@code C0} to {@code C<constants - 1>}
+	 *
+	 * <p>The constants are made in a loop rather than having a field each, so any number of them will fit in the static block.
+	 */
+	public static Class<?> loadEnum(String name, int constants) {
+		String desc = 'L' + name + ';';
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, name, "Ljava/lang/Enum<" + desc + ">;", "java/lang/Enum", null);
+		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, "$VALUES", '[' + desc, null, null).visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PRIVATE, "<init>", "(Ljava/lang/String;I)V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitVarInsn(Opcodes.ALOAD, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Enum", "<init>", "(Ljava/lang/String;I)V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[" + desc, null, null);
+		method.visitCode();
+		method.visitFieldInsn(Opcodes.GETSTATIC, name, "$VALUES", '[' + desc);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, '[' + desc, "clone", "()Ljava/lang/Object;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, '[' + desc);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "valueOf", "(Ljava/lang/String;)" + desc, null, null);
+		method.visitCode();
+		method.visitLdcInsn(Type.getObjectType(name));
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Enum", "valueOf", "(Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Enum;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, name);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		method.visitCode();
+		method.visitLdcInsn(constants);
+		method.visitTypeInsn(Opcodes.ANEWARRAY, name);
+		method.visitFieldInsn(Opcodes.PUTSTATIC, name, "$VALUES", '[' + desc);
+		method.visitInsn(Opcodes.ICONST_0);
+		method.visitVarInsn(Opcodes.ISTORE, 0);
+		Label loop = new Label(), end = new Label();
+		method.visitLabel(loop);
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitLdcInsn(constants);
+		method.visitJumpInsn(Opcodes.IF_ICMPGE, end);
+		method.visitFieldInsn(Opcodes.GETSTATIC, name, "$VALUES", '[' + desc);
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitTypeInsn(Opcodes.NEW, name);
+		method.visitInsn(Opcodes.DUP);
+		method.visitLdcInsn("C");
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;", false);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "(Ljava/lang/String;I)V", false);
+		method.visitInsn(Opcodes.AASTORE);
+		method.visitIincInsn(0, 1);
+		method.visitJumpInsn(Opcodes.GOTO, loop);
+		method.visitLabel(end);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return new Loader().define(name, writer.toByteArray());
+	}
+
+	/**
+	 * Makes an enum the way javac does, with a field for each of the given number of constants, named {@code C0} to
+	 * {@code C<constants - 1>}, and the given number of methods, named {@code m0} to {@code m<methods - 1>}
+	 *
+	 * <p>Past a few thousand constants the static block is too big to be written, but the node can still be transformed.
+	 */
+	public static ClassNode makeEnum(String name, int constants, int methods) {
+		String desc = 'L' + name + ';';
+		ClassNode node = new ClassNode();
+		node.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, name, "Ljava/lang/Enum<" + desc + ">;", "java/lang/Enum", null);
+		for (int i = 0; i < constants; i++) {
+			node.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "C" + i, desc, null, null).visitEnd();
+		}
+		node.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, "$VALUES", '[' + desc, null, null).visitEnd();
+
+		MethodVisitor method = node.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[" + desc, null, null);
+		method.visitCode();
+		method.visitFieldInsn(Opcodes.GETSTATIC, name, "$VALUES", '[' + desc);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, '[' + desc, "clone", "()Ljava/lang/Object;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, '[' + desc);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(1, 0);
+		method.visitEnd();
+
+		method = node.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "valueOf", "(Ljava/lang/String;)" + desc, null, null);
+		method.visitCode();
+		method.visitLdcInsn(Type.getObjectType(name));
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Enum", "valueOf", "(Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Enum;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, name);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(2, 1);
+		method.visitEnd();
+
+		method = node.visitMethod(Opcodes.ACC_PRIVATE, "<init>", "(Ljava/lang/String;I)V", "()V", null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitVarInsn(Opcodes.ALOAD, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Enum", "<init>", "(Ljava/lang/String;I)V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(3, 3);
+		method.visitEnd();
+
+		for (int i = 0; i < methods; i++) {
+			method = node.visitMethod(Opcodes.ACC_PUBLIC, "m" + i, "()I", null, null);
+			method.visitCode();
+			push(method, i);
+			method.visitInsn(Opcodes.IRETURN);
+			method.visitMaxs(1, 1);
+			method.visitEnd();
+		}
+
+		method = node.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		method.visitCode();
+		for (int i = 0; i < constants; i++) {
+			method.visitTypeInsn(Opcodes.NEW, name);
+			method.visitInsn(Opcodes.DUP);
+			method.visitLdcInsn("C" + i);
+			push(method, i);
+			method.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "(Ljava/lang/String;I)V", false);
+			method.visitFieldInsn(Opcodes.PUTSTATIC, name, "C" + i, desc);
+		}
+		push(method, constants);
+		method.visitTypeInsn(Opcodes.ANEWARRAY, name);
+		for (int i = 0; i < constants; i++) {
+			method.visitInsn(Opcodes.DUP);
+			push(method, i);
+			method.visitFieldInsn(Opcodes.GETSTATIC, name, "C" + i, desc);
+			method.visitInsn(Opcodes.AASTORE);
+		}
+		method.visitFieldInsn(Opcodes.PUTSTATIC, name, "$VALUES", '[' + desc);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(4, 0);
+		method.visitEnd();
+
+		node.visitEnd();
+		return node;
+	}
+
+	/**
+	 * Makes a class with the given number of {@code void} methods, named {@code m0} to {@code m<methods - 1>}, each of
+	 * which calls the next. Every other method is private, so is called with {@code INVOKESPECIAL}.
+	 */
+	public static ClassNode makeClass(String name, int methods) {
+		ClassNode node = new ClassNode();
+		node.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+
+		MethodVisitor method = node.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(1, 1);
+		method.visitEnd();
+
+		for (int i = 0; i < methods; i++) {
+			method = node.visitMethod(isPrivate(i) ? Opcodes.ACC_PRIVATE : Opcodes.ACC_PUBLIC, "m" + i, "()V", null, null);
+			method.visitCode();
+			if (i + 1 < methods) {
+				method.visitVarInsn(Opcodes.ALOAD, 0);
+				method.visitMethodInsn(isPrivate(i + 1) ? Opcodes.INVOKESPECIAL : Opcodes.INVOKEVIRTUAL, name, "m" + (i + 1), "()V", false);
+			}
+			method.visitInsn(Opcodes.RETURN);
+			method.visitMaxs(1, 1);
+			method.visitEnd();
+		}
+
+		node.visitEnd();
+		return node;
+	}
+
+	private static boolean isPrivate(int method) {
+		return (method & 1) == 0;
+	}
+
+	/** Makes a Mixin targeting the given enum, which structs can extend */
+	public static byte[] makeMixin(String name, String target) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+
+		AnnotationVisitor mixin = writer.visitAnnotation("Lorg/spongepowered/asm/mixin/Mixin;", false);
+		AnnotationVisitor targets = mixin.visitArray("value");
+		targets.visit(null, Type.getObjectType(target));
+		targets.visitEnd();
+		mixin.visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** Makes a struct extending the given Mixin, overriding the given number of methods from {@link #makeEnum(String, int, int)} */
+	public static byte[] makeStruct(String name, String mixin, int methods) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, mixin, null);
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, mixin, "<init>", "()V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		for (int i = 0; i < methods; i++) {
+			method = writer.visitMethod(Opcodes.ACC_PUBLIC, "m" + i, "()I", null, null);
+			method.visitCode();
+			push(method, i + 1);
+			method.visitInsn(Opcodes.IRETURN);
+			method.visitMaxs(0, 0);
+			method.visitEnd();
+		}
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** Pushes the given value the way javac would */
+	private static void push(MethodVisitor method, int value) {
+		if (value >= -1 && value <= 5) {
+			method.visitInsn(Opcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			method.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			method.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			method.visitLdcInsn(value);
+		}
+	}
+
+	/** Copies the given node, as transforming it will change it */
+	public static ClassNode copy(ClassNode node) {
+		ClassNode copy = new ClassNode();
+		node.accept(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chocohead.mm.SyntheticClasses;
+
+/** {@link ClassTinkerers#getEnum(Class, String)} against the linear scan through the constants it used to do */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class GetEnumBenchmark {
+	@Param({"10", "100", "1000", "10000"})
+	public int constants;
+	private Class<Enum> type;
+	private String[] names;
+	private int next;
+
+	@Setup
+	public void setup() {
+		type = (Class<Enum>) SyntheticClasses.loadEnum("com/chocohead/mm/api/Synthetic" + constants, constants);
+
+		//Look up every constant in turn so the scan is measured over its average distance
+		names = new String[constants];
+		for (int i = 0; i < constants; i++) {
+			names[i] = "C" + i;
+		}
+	}
+
+	private String nextName() {
+		String name = names[next];
+		if (++next == names.length) next = 0;
+		return name;
+	}
+
+	@Benchmark
+	public Enum cached() {
+		return ClassTinkerers.getEnum(type, nextName());
+	}
+
+	@Benchmark
+	public Enum scan() {
+		String name = nextName();
+
+		for (Enum constant : type.getEnumConstants()) {
+			if (constant.name().equals(name)) {
+				return constant;
+			}
+		}
+		throw new IllegalArgumentException("Unable to find " + name + " in " + type);
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Watches any access transformers which are loose files (ie those in development) and reapplies them to already loaded
+ * classes when they change, as far as the JVM allows.
+ */
+final class ATReloader implements Runnable {
+	private final Instrumentation instrumentation;
+	private final Object transformer;
+	private final Method transform;
+	private final WatchService watcher;
+	private final Map<Path, URL> files;
+	private final Map<URL, Map<String, Set<String>>> fileTransforms;
+	private final Map<String, Set<String>> transforms;
+
+	private ATReloader(Instrumentation instrumentation, Object transformer, Method transform, WatchService watcher, Map<Path, URL> files,
+			Map<URL, Map<String, Set<String>>> fileTransforms, Map<String, Set<String>> transforms) {
+		this.instrumentation = instrumentation;
+		this.transformer = transformer;
+		this.transform = transform;
+		this.watcher = watcher;
+		this.files = files;
+		this.fileTransforms = fileTransforms;
+		this.transforms = transforms;
+	}
+
+	/** Whether any of the given access transformers are loose files which could be watched for changes */
+	static boolean canWatch(Collection<URL> urls) {
+		return urls.stream().anyMatch(url -> "file".equals(url.getProtocol()));
+	}
+
+	static void start(Instrumentation instrumentation, Object transformer, Map<URL, Map<String, Set<String>>> fileTransforms, Map<String, Set<String>> transforms) {
+		Map<Path, URL> files = new HashMap<>();
+		for (URL url : fileTransforms.keySet()) {
+			if ("file".equals(url.getProtocol())) {
+				try {
+					files.put(Paths.get(url.toURI()), url);
+				} catch (URISyntaxException e) {
+					MM.LOGGER.warn("Unable to watch access transformer at " + url, e);
+				}
+			}
+		}
+		if (files.isEmpty()) return; //Nothing we can watch
+
+		Method transform;
+		try {//Reapplying the transformations means running the class back through Mixin
+			transform = transformer.getClass().getMethod("transformClassBytes", String.class, String.class, byte[].class);
+		} catch (NoSuchMethodException e) {
+			MM.LOGGER.warn("Unable to find how to run classes through " + transformer.getClass().getName() + ", changed access transformers will only apply to unloaded classes");
+			transform = null;
+		}
+
+		WatchService watcher;
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			for (Path dir : files.keySet().stream().map(Path::getParent).collect(Collectors.toSet())) {
+				dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+			}
+		} catch (IOException e) {
+			MM.LOGGER.warn("Unable to watch access transformers", e);
+			return;
+		}
+
+		Thread thread = new Thread(new ATReloader(instrumentation, transformer, transform, watcher, files, fileTransforms, transforms), "MM AT Watcher");
+		thread.setDaemon(true);
+		thread.start();
+		MM.LOGGER.info("Watching " + files.size() + " access transformer(s) for changes");
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				Thread.sleep(100); //Give whatever is writing the file a moment to finish
+
+				Set<URL> changed = new HashSet<>();
+				do {
+					Path dir = (Path) key.watchable();
+
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.context() instanceof Path) {
+							URL url = files.get(dir.resolve((Path) event.context()));
+							if (url != null) changed.add(url);
+						}
+					}
+
+					key.reset();
+				} while ((key = watcher.poll()) != null);
+
+				if (!changed.isEmpty()) reload(changed);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void reload(Set<URL> changed) {
+		for (URL url : changed) {
+			try {
+				fileTransforms.put(url, Plugin.readAT(url));
+			} catch (IOException e) {
+				MM.LOGGER.warn("Error rereading access transformer at " + url, e);
+			}
+		}
+
+		Map<String, Set<String>> updated = new HashMap<>();
+		for (Map<String, Set<String>> fileTransform : fileTransforms.values()) {
+			Plugin.mergeATs(updated, fileTransform);
+		}
+
+		Set<String> targets = new HashSet<>(transforms.keySet());
+		targets.addAll(updated.keySet());
+
+		Set<String> affected = new HashSet<>();
+		for (String target : targets) {
+			Set<String> current = transforms.get(target);
+			Set<String> now = updated.getOrDefault(target, Collections.emptySet());
+			if (Objects.equals(current, now)) continue;
+
+			if (current == null) {//Mixin only takes new targets when it first starts
+				MM.LOGGER.warn("Access transformer now targets " + target + " which will only apply after a restart");
+				continue;
+			}
+
+			//The transformer for the class still has the old set, so changing that will change what it does next time
+			synchronized (current) {
+				current.clear();
+				current.addAll(now);
+			}
+			affected.add(target.replace('/', '.'));
+		}
+		if (affected.isEmpty()) return;
+
+		if (transform == null) {
+			MM.LOGGER.info("Access transformers changed for " + affected + ", which will apply when they're next loaded");
+			return;
+		}
+
+		for (Class<?> loaded : instrumentation.getAllLoadedClasses()) {
+			if (!affected.remove(loaded.getName())) continue;
+			redefine(loaded);
+		}
+
+		if (!affected.isEmpty()) MM.LOGGER.info("Access transformers changed for " + affected + ", which will apply when they're loaded");
+	}
+
+	private void redefine(Class<?> type) {
+		String name = type.getName();
+
+		byte[] bytecode;
+		try (InputStream in = ATReloader.class.getResourceAsStream('/' + name.replace('.', '/') + ".class")) {
+			if (in == null) {
+				MM.LOGGER.warn("Unable to find " + name + " to redefine it, restart to apply the changed access transformer");
+				return;
+			}
+
+			bytecode = (byte[]) transform.invoke(transformer, name, name, ByteStreams.toByteArray(in));
+		} catch (IOException | IllegalAccessException | InvocationTargetException e) {
+			MM.LOGGER.warn("Error retransforming " + name + ", restart to apply the changed access transformer", e);
+			return;
+		}
+
+		try {
+			instrumentation.redefineClasses(new ClassDefinition(type, bytecode));
+			MM.LOGGER.info("Redefined " + name + " with changed access transformer");
+		} catch (UnsupportedOperationException e) {
+			//Most JVMs don't allow modifiers to change, for that something like DCEVM is needed
+			MM.LOGGER.warn("The JVM doesn't allow " + name + " to be redefined with its changed access (" + e.getMessage() + "), restart to apply it");
+		} catch (ClassNotFoundException | UnmodifiableClassException | LinkageError e) {
+			MM.LOGGER.warn("Unable to redefine " + name + ", restart to apply the changed access transformer", e);
+		}
+	}
+}
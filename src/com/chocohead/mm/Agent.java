@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+
+/**
+ * Java agent entry point for development, allowing changes to access transformers to be applied to classes which have
+ * already been loaded without restarting the game. Not needed (or wanted) in production.
+ */
+public final class Agent {
+	private static volatile Instrumentation instrumentation;
+
+	private Agent() {
+	}
+
+	public static void premain(String args, Instrumentation instrumentation) {
+		Agent.instrumentation = instrumentation;
+	}
+
+	public static void agentmain(String args, Instrumentation instrumentation) {
+		premain(args, instrumentation);
+	}
+
+	static Instrumentation getInstrumentation() {
+		if (instrumentation != null) return instrumentation;
+
+		try {//The agent will have been loaded by the system class loader, which isn't the one the game loads us with
+			Class<?> agent = Class.forName(Agent.class.getName(), true, ClassLoader.getSystemClassLoader());
+
+			if (agent != Agent.class) {
+				Method method = agent.getDeclaredMethod("getInstrumentation");
+				method.setAccessible(true);
+				return (Instrumentation) method.invoke(null);
+			}
+		} catch (ReflectiveOperationException e) {
+			//Not running as an agent then
+		}
+
+		return null;
+	}
+}
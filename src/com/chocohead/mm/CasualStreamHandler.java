@@ -76,8 +76,13 @@ public final class CasualStreamHandler extends URLStreamHandler {
 	protected URLConnection openConnection(URL url) throws IOException {
 		//System.out.println(providers.keySet());
 		//System.out.println("Open connection on " + url.getPath());
-		if (!providers.containsKey(url.getPath())) return null; //Who?
+		long time = Profiler.time(), allocated = Profiler.allocated();
+		byte[] stream = providers.get(url.getPath());
+		if (stream == null) return null; //Who?
+		if (LoadOrder.ENABLED) LoadOrder.record(url.getPath().substring(1, url.getPath().length() - 6));
 		//System.out.println("### PASSED ###");
-		return new CasualConnection(url, providers.get(url.getPath()));
+		URLConnection connection = new CasualConnection(url, stream);
+		Profiler.record("Stream handler connection", time, allocated);
+		return connection;
 	}
 }
\ No newline at end of file
@@ -7,15 +7,25 @@
  */
 package com.chocohead.mm;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -33,44 +43,41 @@ import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import com.chocohead.mm.EnumSubclasser.PreparedSubclass;
 import com.chocohead.mm.api.ClassTinkerers;
 import com.chocohead.mm.api.EnumAdder;
 import com.chocohead.mm.api.EnumAdder.EnumAddition;
 
 public final class EnumExtender {
-	public static final Map<String, Object[]> POOL = new HashMap<>();
+	public static final Map<String, Object[]> POOL = Collections.synchronizedMap(new HashMap<>());
+	/** Whether to prepare enum subclasses in the background (via {@code -Dmm.prepareEnums=true}), at the cost of doing so for enums which never load */
+	static final boolean PREPARE_SUBCLASSES = Boolean.getBoolean("mm.prepareEnums");
+	private static final Map<EnumAdder, FutureTask<Map<String, PreparedSubclass>>> PREPARED_SUBCLASSES = new ConcurrentHashMap<>();
 
 
 	static Consumer<ClassNode> makeEnumExtender(EnumAdder builder) {
-		return node -> {
+		Consumer<ClassNode> extender = node -> {
 			//System.out.println("Extending " + node.name);
 			if ((node.access & Opcodes.ACC_ENUM) != Opcodes.ACC_ENUM)
 				throw new IllegalStateException("Tried to add enum entries to a non-enum type " + node.name);
 
-			String valuesField = null;
-			out: for (MethodNode method : node.methods) {
-				if ("values".equals(method.name) && ("()[L" + node.name + ';').equals(method.desc)) {
-					for (Iterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();) {
-						AbstractInsnNode insn = it.next();
+			MemberIndex index = MemberIndex.of(node);
+			MethodNode values = index.getMethod("values", "()[L" + node.name + ';');
+			if (values == null) throw new IllegalStateException("Unable to find " + node.name + "#values()[L" + node.name + ';');
 
-						if (insn.getType() == AbstractInsnNode.FIELD_INSN) {
-							valuesField = ((FieldInsnNode) insn).name;
-							break out;
-						}
-					}
+			String valuesField = null;
+			for (Iterator<AbstractInsnNode> it = values.instructions.iterator(); it.hasNext();) {
+				AbstractInsnNode insn = it.next();
 
-					throw new IllegalStateException("Unable to find values field in " + node.name + '#' + method.name + method.desc);
+				if (insn.getType() == AbstractInsnNode.FIELD_INSN) {
+					valuesField = ((FieldInsnNode) insn).name;
+					break;
 				}
 			}
-			if (valuesField == null) throw new IllegalStateException("Unable to find " + node.name + "#values()[L" + node.name + ';');
+			if (valuesField == null) throw new IllegalStateException("Unable to find values field in " + node.name + '#' + values.name + values.desc);
 
-			MethodNode clinit = null;
-			for (MethodNode method : node.methods) {
-				if ("<clinit>".equals(method.name) && "()V".equals(method.desc)) {
-					clinit = method;
-					break;
-				}
-			} //Even empty enums have values and valueOf, which by extension means they have a static block to make the (empty) $VALUES field
+			//Even empty enums have values and valueOf, which by extension means they have a static block to make the (empty) $VALUES field
+			MethodNode clinit = index.getMethod("<clinit>", "()V");
 			if (clinit == null) throw new IllegalStateException("Unable to find " + node.name + "'s static block");
 
 			MethodNode arrayCreation = clinit;
@@ -87,24 +94,21 @@ public final class EnumExtender {
 						if (!node.name.equals(minsn.owner) || !minsn.desc.endsWith(")[L" + node.name + ';'))
 							throw new IllegalStateException("Unexpected $VALUES array creator: " + minsn.owner + '#' + minsn.name + minsn.desc);
 
-						for (MethodNode method : node.methods) {
-							if (minsn.name.equals(method.name) && minsn.desc.equals(method.desc)) {
-								arrayCreation = method;
-								fieldsSet = minsn;
+						MethodNode method = index.getMethod(minsn.name, minsn.desc);
+						if (method == null) throw new IllegalStateException("Unable to find $VALUES array creator: " + minsn.owner + '#' + minsn.name + minsn.desc);
 
-								it = method.instructions.iterator(method.instructions.size());
-								for (insn = it.previous(); it.hasPrevious(); insn = it.previous()) {
-									if (insn.getType() == AbstractInsnNode.INSN && insn.getOpcode() == Opcodes.ARETURN) {
-										setValues = insn;
-										break off;
-									}
-								}
+						arrayCreation = method;
+						fieldsSet = minsn;
 
-								throw new IllegalStateException("$VALUES array creator " + minsn.owner + '#' + minsn.name + minsn.desc + " never returns?!");
+						it = method.instructions.iterator(method.instructions.size());
+						for (insn = it.previous(); it.hasPrevious(); insn = it.previous()) {
+							if (insn.getType() == AbstractInsnNode.INSN && insn.getOpcode() == Opcodes.ARETURN) {
+								setValues = insn;
+								break off;
 							}
 						}
 
-						throw new IllegalStateException("Unable to find $VALUES array creator: " + minsn.owner + '#' + minsn.name + minsn.desc);
+						throw new IllegalStateException("$VALUES array creator " + minsn.owner + '#' + minsn.name + minsn.desc + " never returns?!");
 					}
 
 					for (insn = it.previous(); it.hasPrevious(); insn = it.previous()) {
@@ -123,6 +127,8 @@ public final class EnumExtender {
 			int currentOrdinal;
 			if (newArray.getType() == AbstractInsnNode.INT_INSN) {
 				currentOrdinal = ((IntInsnNode) newArray).operand;
+			} else if (newArray.getType() == AbstractInsnNode.LDC_INSN && ((LdcInsnNode) newArray).cst instanceof Integer) {
+				currentOrdinal = (Integer) ((LdcInsnNode) newArray).cst; //More entries than fit in a short
 			} else if (newArray.getType() == AbstractInsnNode.INSN) {
 				switch (newArray.getOpcode()) {
 				case Opcodes.ICONST_0:
@@ -158,20 +164,15 @@ public final class EnumExtender {
 
 			String constructor = getConstructorDescriptor(builder.parameterTypes);
 			Supplier<String> anonymousClassFactory;
+			Map<String, PreparedSubclass> preparedSubclasses;
 			if (builder.willSubclass()) {
-				anonymousClassFactory = anonymousClassFactory(node);
-
-				node.access &= ~Opcodes.ACC_FINAL; //Ensure the type can be subclassed at all
-				for (MethodNode method : node.methods) {
-					if ("<init>".equals(method.name) && constructor.equals(method.desc)) {
-						//Make sure the subclass can use the constructor it wants to
-						method.access &= ~Opcodes.ACC_PRIVATE;
-						break;
-					}
-				}
+				anonymousClassFactory = prepareForSubclassing(node, constructor);
+				preparedSubclasses = takePreparedSubclasses(builder);
 			} else {
 				anonymousClassFactory = null;
+				preparedSubclasses = Collections.emptyMap();
 			}
+			Map<String, String> structSubclasses = new HashMap<>();
 			InsnList fieldSetting = new InsnList();
 			InsnList arrayFilling = new InsnList();
 
@@ -185,7 +186,8 @@ public final class EnumExtender {
 					fieldSetting.add(new FieldInsnNode(Opcodes.GETSTATIC, "com/chocohead/mm/EnumExtender", "POOL", "Ljava/util/Map;"));
 					POOL.put(poolKey, addition.getParameters());
 					fieldSetting.add(new LdcInsnNode(poolKey));
-					fieldSetting.add(new MethodInsnNode(Opcodes.INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", true));
+					//Nothing else needs the parameters once the enum has them, so they don't need to stick around
+					fieldSetting.add(new MethodInsnNode(Opcodes.INVOKEINTERFACE, "java/util/Map", "remove", "(Ljava/lang/Object;)Ljava/lang/Object;", true));
 					fieldSetting.add(new TypeInsnNode(Opcodes.CHECKCAST, "[Ljava/lang/Object;"));
 					fieldSetting.add(new VarInsnNode(Opcodes.ASTORE, 0));
 
@@ -193,7 +195,19 @@ public final class EnumExtender {
 					fieldSetting.add(stuffStart);
 				} else stuffStart = null;
 
-				String additionType = addition.isEnumSubclass() ? anonymousClassFactory.get() : node.name;
+				String additionType;
+				if (addition.isEnumSubclass()) {
+					additionType = structSubclasses.get(addition.structClass);
+
+					if (additionType == null) {//Additions using the same struct have the same overrides, so can share the subclass
+						structSubclasses.put(addition.structClass, additionType = anonymousClassFactory.get());
+
+						ClassTinkerers.define(additionType, GeneratedClasses.generatedClass(EnumSubclasser.defineAnonymousSubclass(node, addition.structClass, additionType, constructor, preparedSubclasses.get(addition.structClass)), builder.getSource()));
+						node.innerClasses.add(new InnerClassNode(additionType, node.name, additionType.substring(node.name.length() + 1), Opcodes.ACC_ENUM));
+					}
+				} else {
+					additionType = node.name;
+				}
 				fieldSetting.add(new TypeInsnNode(Opcodes.NEW, additionType));
 				fieldSetting.add(new InsnNode(Opcodes.DUP));
 
@@ -277,12 +291,6 @@ public final class EnumExtender {
 				}
 
 
-				if (addition.isEnumSubclass()) {
-					ClassTinkerers.define(additionType, EnumSubclasser.defineAnonymousSubclass(node, addition, additionType, constructor));
-					node.innerClasses.add(new InnerClassNode(additionType, node.name, additionType.substring(node.name.length() + 1), Opcodes.ACC_ENUM));
-				}
-
-
 				arrayFilling.add(new InsnNode(Opcodes.DUP));
 				arrayFilling.add(instructionForValue(currentOrdinal++));
 				arrayFilling.add(new FieldInsnNode(Opcodes.GETSTATIC, node.name, addition.name, 'L' + node.name + ';'));
@@ -296,6 +304,77 @@ public final class EnumExtender {
 			if (builder.hasParameters()) clinit.maxLocals = Math.max(clinit.maxLocals, 1);
 			clinit.maxStack = Math.max(clinit.maxStack, getStackSize(builder.parameterTypes));
 		};
+		Verification.attribute(extender, builder.getSource()); //Rather than blaming MM for the extension
+		return extender;
+	}
+
+	private static Supplier<String> prepareForSubclassing(ClassNode node, String constructor) {
+		Supplier<String> anonymousClassFactory = anonymousClassFactory(node);
+
+		node.access &= ~Opcodes.ACC_FINAL; //Ensure the type can be subclassed at all
+		MethodNode init = MemberIndex.of(node).getMethod("<init>", constructor);
+		if (init != null) init.access &= ~Opcodes.ACC_PRIVATE; //Make sure the subclass can use the constructor it wants to
+
+		return anonymousClassFactory;
+	}
+
+	static void prepareSubclasses(Collection<EnumAdder> builders) {
+		ExecutorService executor = null;
+
+		for (EnumAdder builder : builders) {
+			if (!builder.willSubclass() || PREPARED_SUBCLASSES.containsKey(builder)) continue;
+			if (executor == null) executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("MM Enum Subclass Preparation").setDaemon(true).build());
+
+			FutureTask<Map<String, PreparedSubclass>> task = new FutureTask<>(() -> prepareSubclasses(builder));
+			PREPARED_SUBCLASSES.put(builder, task);
+			executor.execute(task);
+		}
+
+		if (executor != null) executor.shutdown(); //Let the thread go once everything is prepared
+	}
+
+	private static Map<String, PreparedSubclass> prepareSubclasses(EnumAdder builder) throws IOException {
+		//Work from the enum as it is on disk, if anything changes it by the time it loads the subclasses will be made again
+		ClassNode node = new ClassNode();
+		try (InputStream in = EnumExtender.class.getResourceAsStream('/' + builder.type + ".class")) {
+			if (in == null) return Collections.emptyMap();
+			new ClassReader(in).accept(node, ClassReader.SKIP_FRAMES);
+		}
+
+		String constructor = getConstructorDescriptor(builder.parameterTypes);
+		Supplier<String> anonymousClassFactory = prepareForSubclassing(node, constructor);
+
+		Map<String, PreparedSubclass> out = new HashMap<>();
+		for (EnumAddition addition : builder.getAdditions()) {
+			if (addition.isEnumSubclass() && !out.containsKey(addition.structClass)) {
+				out.put(addition.structClass, EnumSubclasser.prepareAnonymousSubclass(node, addition.structClass, anonymousClassFactory.get(), constructor));
+			}
+		}
+
+		return out;
+	}
+
+	/** Lets go of any prepared subclasses which haven't been used yet, as their enums are unlikely to load now the game has started */
+	static void discardPreparedSubclasses() {
+		for (Iterator<FutureTask<Map<String, PreparedSubclass>>> it = PREPARED_SUBCLASSES.values().iterator(); it.hasNext();) {
+			it.next().cancel(false); //Any still to run won't be, any running will be ignored
+			it.remove();
+		}
+	}
+
+	private static Map<String, PreparedSubclass> takePreparedSubclasses(EnumAdder builder) {
+		FutureTask<Map<String, PreparedSubclass>> task = PREPARED_SUBCLASSES.remove(builder);
+		if (task == null) return Collections.emptyMap();
+
+		task.run(); //If the preparation hasn't started yet we might as well do it now, otherwise this does nothing
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			return Collections.emptyMap(); //Whatever went wrong will go wrong again making the subclasses normally
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Collections.emptyMap();
+		}
 	}
 
 	private static String getConstructorDescriptor(Type[] parameters) {
@@ -309,28 +388,8 @@ public final class EnumExtender {
 	private static Supplier<String> anonymousClassFactory(ClassNode target) {
 		String leadIn = target.name + '$';
 
-		Set<String> seenInners = new HashSet<>();
-		for (MethodNode method : target.methods) {
-			on: for (ListIterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();) {
-				AbstractInsnNode insn = it.next();
-
-				if (insn.getType() == AbstractInsnNode.METHOD_INSN) {
-					String owner = ((MethodInsnNode) insn).owner;
-
-					if (owner.startsWith(leadIn)) {
-						for (int i = leadIn.length(); i < owner.length(); i++) {
-							char c = owner.charAt(i);
-							if ('0' > c || c > '9') continue on;
-						}
-
-						seenInners.add(owner.substring(leadIn.length()));
-					}
-				}
-			}
-		}
-
 		return new Supplier<String>() {
-			private int last = seenInners.stream().mapToInt(Integer::parseInt).max().orElse(0);
+			private int last = MemberIndex.of(target).getLastAnonymousClass();
 
 			@Override
 			public String get() {
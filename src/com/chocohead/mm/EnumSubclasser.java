@@ -14,31 +14,38 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.MethodRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
@@ -47,17 +54,23 @@ import org.objectweb.asm.tree.VarInsnNode;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.util.Annotations;
 
-import com.chocohead.mm.api.EnumAdder.EnumAddition;
+import com.chocohead.mm.api.InlineStruct;
+import com.chocohead.mm.api.LazyStruct;
 
 final class EnumSubclasser {
 	private static final class StructClassVisitor extends ClassVisitor {
 		private static final String MIXIN = Type.getDescriptor(Mixin.class);
+		private static final String INLINE = Type.getDescriptor(InlineStruct.class);
+		private static final String LAZY = Type.getDescriptor(LazyStruct.class);
 		private final List<MethodNode> methods = new ArrayList<>();
+		private final boolean readCode;
 		private String name, parent;
-		private boolean isMixin, hasRead;
+		private boolean isMixin, isInline, isLazy, hasFields, hasRead;
 
-		public StructClassVisitor() {
+		public StructClassVisitor(boolean readCode) {
 			super(Opcodes.ASM7);
+
+			this.readCode = readCode;
 		}
 
 		@Override
@@ -68,15 +81,25 @@ final class EnumSubclasser {
 
 		@Override
 		public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-			if (!visible && !isMixin) {
-				isMixin = MIXIN.equals(descriptor);
+			if (!visible) {
+				if (!isMixin) isMixin = MIXIN.equals(descriptor);
+				if (!isInline) isInline = INLINE.equals(descriptor);
+				if (!isLazy) isLazy = LAZY.equals(descriptor);
 			}
 
 			return null;
 		}
 
+		@Override
+		public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+			hasFields = true;
+			return null;
+		}
+
 		@Override
 		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+			if (!readCode) return null; //Only after the class header
+
 			MethodNode method = new MethodNode(access, name, descriptor, signature, exceptions);
 			methods.add(method);
 			return method;
@@ -92,35 +115,101 @@ final class EnumSubclasser {
 			return isMixin;
 		}
 
-		public StructClass asStruct() {
+		public StructClass asStruct(byte[] bytecode) {
 			if (!hasRead) throw new IllegalStateException("Haven't visited class");
 			if (isMixin) throw new IllegalArgumentException("Tried to turn Mixin into a struct");
-			return new StructClass(name, parent, methods);
+			if (isInline && isLazy) throw new IllegalStateException("Struct " + name + " is both inlined and lazy, it can only be one");
+			return new StructClass(name, parent, bytecode, isInline, isLazy);
+		}
+
+		public List<MethodNode> getMethods() {
+			if (!hasRead) throw new IllegalStateException("Haven't visited class");
+			if (!readCode) throw new IllegalStateException("Only read header of " + name);
+			if (isInline) checkInlinable();
+			return methods;
+		}
+
+		private void checkInlinable() {
+			if (hasFields) throw new IllegalStateException("Inlined struct " + name + " has fields");
+
+			for (MethodNode method : methods) {
+				switch (method.name) {
+				case "<clinit>":
+					throw new IllegalStateException("Inlined struct " + name + " has a static block");
+
+				case "<init>": {
+					List<AbstractInsnNode> insns = new ArrayList<>(3);
+					for (AbstractInsnNode insn : method.instructions) {
+						if (insn.getOpcode() >= 0) insns.add(insn); //Skip labels, line numbers and frames
+					}
+
+					if (!"()V".equals(method.desc) || insns.size() != 3 || insns.get(0).getOpcode() != Opcodes.ALOAD || ((VarInsnNode) insns.get(0)).var != 0
+							|| insns.get(1).getOpcode() != Opcodes.INVOKESPECIAL || !parent.equals(((MethodInsnNode) insns.get(1)).owner)
+							|| insns.get(2).getOpcode() != Opcodes.RETURN) {
+						throw new IllegalStateException("Inlined struct " + name + " has a non-trivial constructor " + method.name + method.desc);
+					}
+					break;
+				}
+
+				default:
+					if (method.desc.contains('L' + name + ';')) {
+						throw new IllegalStateException("Inlined struct " + name + " refers to itself in " + method.name + method.desc);
+					}
+
+					for (AbstractInsnNode insn : method.instructions) {
+						if (insn.getType() == AbstractInsnNode.TYPE_INSN && ((TypeInsnNode) insn).desc.equals(name)
+								|| insn.getType() == AbstractInsnNode.LDC_INSN && Type.getObjectType(name).equals(((LdcInsnNode) insn).cst)) {
+							throw new IllegalStateException("Inlined struct " + name + " refers to its own type in " + method.name + method.desc);
+						}
+					}
+					break;
+				}
+			}
 		}
 	}
 	static final class StructClass {
-		private boolean isFixed;
+		private volatile boolean isFixed;
 		public final String name;
-		private String parent;
-		public final List<MethodNode> methods;
-
-		StructClass(String name, String parent, List<MethodNode> methods) {
+		private final String parent;
+		private String fixedParent;
+		/** The struct's class file, which is only parsed in full when the struct is actually needed */
+		private byte[] bytecode;
+		private volatile List<MethodNode> methods;
+		final List<FieldNode> extraFields = new ArrayList<>();
+		private final boolean isInline, isLazy;
+		/** The enum the struct is used by, and whether the enum and struct have been defined (and thus are done with the methods) */
+		private String enumName;
+		private boolean isEnumDefined, isDefined;
+
+		StructClass(String name, String parent, byte[] bytecode, boolean isInline, boolean isLazy) {
 			this.name = name;
 			this.parent = parent;
-			this.methods = methods;
+			this.bytecode = bytecode;
+			this.isInline = isInline;
+			this.isLazy = isLazy;
 		}
 
 		public StructClass(ClassNode node) {
 			name = node.name;
 			parent = node.superName;
 			methods = node.methods;
+			isInline = isLazy = false;
+		}
+
+		boolean isInline() {
+			return isInline;
+		}
+
+		boolean isLazy() {
+			return isLazy;
 		}
 
 		boolean isFixed() {
 			return isFixed;
 		}
 
-		void setFixed() {
+		void setFixed(String parent) {
+			fixedParent = parent;
 			isFixed = true;
 		}
 
@@ -128,47 +217,257 @@ final class EnumSubclasser {
 			return parent;
 		}
 
-		String switchParent(String name) {
-			String old = parent;
-			parent = name;
-			return old;
+		String getFixedParent() {
+			if (!isFixed) throw new IllegalStateException("Struct " + name + " hasn't been fixed yet");
+			return fixedParent;
+		}
+
+		public List<MethodNode> getMethods() {
+			List<MethodNode> methods = this.methods;
+
+			if (methods == null) {
+				synchronized (this) {
+					if ((methods = this.methods) == null) {
+						if (bytecode == null) throw new IllegalStateException("Struct " + name + " has already been applied");
+
+						StructClassVisitor visitor = new StructClassVisitor(true);
+						//Recalculating frames is slow, but we are changing a lot of things
+						new ClassReader(bytecode).accept(visitor, GeneratedClasses.LEAN ? ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG : ClassReader.SKIP_FRAMES);
+						this.methods = methods = visitor.getMethods();
+						bytecode = null;
+					}
+				}
+			}
+
+			return methods;
+		}
+
+		synchronized void useFor(String enumName) {
+			if (this.enumName == null) this.enumName = enumName;
+		}
+
+		synchronized boolean isUsedBy(String enumName) {
+			return enumName.equals(this.enumName);
+		}
+
+		synchronized List<MethodNode> takeMethods() {
+			List<MethodNode> methods = getMethods();
+			isDefined = true;
+
+			if (!isEnumDefined) {//Subclasses for the enum are still being made, which will need the methods as they are
+				List<MethodNode> copy = new ArrayList<>(methods.size());
+				for (MethodNode method : methods) {
+					MethodNode methodCopy = new MethodNode(method.access, method.name, method.desc, method.signature, method.exceptions.toArray(new String[0]));
+					method.accept(methodCopy);
+					copy.add(methodCopy);
+				}
+				return copy;
+			}
+
+			//Once the methods have been handed out nothing else needs them, so there's no reason to keep them around
+			this.methods = null;
+			return methods;
+		}
+
+		synchronized void enumDefined() {
+			isEnumDefined = true;
+
+			//Inlined structs are never loaded, so once the enum has been defined nothing else will need the methods
+			if (isInline || isDefined) {
+				methods = null;
+				bytecode = null;
+			}
+		}
+	}
+	/** The field in the deepest struct which holds the enum entry the struct is for */
+	private static final String OWNER = "MMowner£";
+	/** The methods in lazy struct subclasses to get the struct, and to make it the first time it's needed */
+	private static final String LAZY_GETTER = "MMstruct£", LAZY_MAKER = "MMmakeStruct£";
+	/** The field in lazy struct subclasses which is locked on to make the struct, rather than the (public) entry itself */
+	private static final String LAZY_LOCK = "MMlock£";
+	/** Placeholder in {@link #STRUCTS} for classes which have been read and found to be Mixins */
+	private static final StructClass NOT_STRUCT = new StructClass("<mixin>", null, null, false, false);
+	private static final Map<String, StructClass> STRUCTS = new ConcurrentHashMap<>();
+
+	static final class PreparedSubclass {
+		private final String name, constructor;
+		private final List<String> methodTable;
+		final byte[] bytecode;
+		final List<MethodNode> bridges;
+
+		PreparedSubclass(String name, String constructor, List<String> methodTable, byte[] bytecode, List<MethodNode> bridges) {
+			this.name = name;
+			this.constructor = constructor;
+			this.methodTable = methodTable;
+			this.bytecode = bytecode;
+			this.bridges = bridges;
+		}
+
+		boolean matches(ClassNode enumNode, String anonymousClassName, String constructor) {
+			return name.equals(anonymousClassName) && this.constructor.equals(constructor) && methodTable.equals(describeMethods(enumNode));
 		}
 	}
-	private static final Map<EnumAddition, StructClass> ADDITION_TO_CHANGES = new IdentityHashMap<>();
-	private static final Map<String, StructClass> STRUCTS_TO_CLASS = new HashMap<>();
-	private static final Set<String> STRUCT_MIXINS = new HashSet<>();
 
-	static byte[] defineAnonymousSubclass(ClassNode enumNode, EnumAddition addition, String anonymousClassName, String constructor) {
-		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+	/** Everything about the enum's methods which can change what the subclass will be */
+	private static List<String> describeMethods(ClassNode enumNode) {
+		return enumNode.methods.stream().map(m -> m.access + " " + m.name + m.desc + ' ' + m.signature + ' ' + m.exceptions).collect(Collectors.toList());
+	}
+
+	static PreparedSubclass prepareAnonymousSubclass(ClassNode enumNode, String structClass, String anonymousClassName, String constructor) {
+		long time = Profiler.time(), allocated = Profiler.allocated();
+		List<String> methodTable = describeMethods(enumNode);
+		int existingMethods = enumNode.methods.size();
 
+		byte[] bytecode = writeAnonymousSubclass(enumNode, structClass, anonymousClassName, constructor);
+		List<MethodNode> bridges = new ArrayList<>(enumNode.methods.subList(existingMethods, enumNode.methods.size()));
+
+		Profiler.record("Enum subclass preparation", time, allocated);
+		return new PreparedSubclass(anonymousClassName, constructor, methodTable, bytecode, bridges);
+	}
+
+	static byte[] defineAnonymousSubclass(ClassNode enumNode, String structClass, String anonymousClassName, String constructor, PreparedSubclass prepared) {
+		long time = Profiler.time(), allocated = Profiler.allocated();
+		byte[] bytecode;
+		if (prepared != null && prepared.matches(enumNode, anonymousClassName, constructor)) {
+			enumNode.methods.addAll(prepared.bridges);
+			bytecode = prepared.bytecode;
+		} else {//Either not prepared or the enum has changed since it was
+			bytecode = writeAnonymousSubclass(enumNode, structClass, anonymousClassName, constructor);
+		}
+
+		Profiler.record(prepared != null && bytecode == prepared.bytecode ? "Enum subclass (prepared)" : "Enum subclass", time, allocated);
+		return bytecode;
+	}
+
+	private static byte[] writeAnonymousSubclass(ClassNode enumNode, String structClass, String anonymousClassName, String constructor) {
 		Type enumType = Type.getObjectType(enumNode.name);
 		Type thisType = Type.getObjectType(anonymousClassName);
-		Type structType = Type.getObjectType(addition.structClass);
+		Type structType = Type.getObjectType(structClass);
+
+		StructClass inlineStruct = loadSuperStruct(structClass);
+		if (inlineStruct != null && inlineStruct.isInline()) {
+			inlineStruct.useFor(enumNode.name);
+
+			//The struct's methods can do anything, so will need frames (which it was read without)
+			HierarchyClassWriter writer = new HierarchyClassWriter(ClassWriter.COMPUTE_FRAMES);
+			writer.addClass(anonymousClassName, enumNode.name, false);
+
+			writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, anonymousClassName, null, enumNode.name, null);
+			writer.visitOuterClass(enumType.getInternalName(), null, null);
+			inlineStruct(writer, enumNode, inlineStruct, anonymousClassName, constructor);
+			writer.visitEnd();
+
+			return writer.toByteArray();
+		}
 
+		StructClass struct = loadStruct(enumNode.name, structClass);
+		assert struct.name.equals(structType.getInternalName());
+		List<StructClass> parents = getParentStructs(struct);
+		Type ownerType = Type.getObjectType(Iterables.getLast(parents).name);
+
+		ClassWriter writer;
+		if (struct.isLazy()) {//Making the struct on demand needs a branch, so there are frames to compute
+			HierarchyClassWriter hierarchyWriter = new HierarchyClassWriter(ClassWriter.COMPUTE_FRAMES);
+			hierarchyWriter.addClass(anonymousClassName, enumNode.name, false);
+			writer = hierarchyWriter;
+		} else {//Everything generated is straight line code, so there are no frames to compute
+			writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		}
 		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, anonymousClassName, null, enumNode.name, null);
 		writer.visitOuterClass(enumType.getInternalName(), null, null);
 
-		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "struct", structType.getDescriptor(), null, null).visitEnd();
-
 		Method method = new Method("<init>", constructor);
 		GeneratorAdapter generator = new GeneratorAdapter(0, method, null, null, writer);
 		generator.loadThis();
 		generator.loadArgs();
 		generator.invokeConstructor(enumType, method);
-		generator.loadThis();
-		generator.newInstance(structType);
-		generator.dup();
-		generator.invokeConstructor(structType, new Method("<init>", "()V"));
-		generator.putField(thisType, "struct", structType);
-		generator.returnValue();
-		generator.endMethod();
 
-		StructClass struct = loadStruct(enumType.getDescriptor(), anonymousClassName, addition);
-		assert struct.name.equals(structType.getInternalName());
+		Method getStruct = new Method(LAZY_GETTER, structType, new Type[0]);
+		if (struct.isLazy()) {
+			generator.returnValue();
+			generator.endMethod();
+
+			writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_VOLATILE, "struct", structType.getDescriptor(), null, null).visitEnd();
+			writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, LAZY_LOCK, "Ljava/lang/Object;", null, null).visitEnd();
+
+			Type objectType = Type.getType(Object.class);
+			generator = new GeneratorAdapter(Opcodes.ACC_STATIC, new Method("<clinit>", "()V"), null, null, writer);
+			generator.newInstance(objectType);
+			generator.dup();
+			generator.invokeConstructor(objectType, new Method("<init>", "()V"));
+			generator.putStatic(thisType, LAZY_LOCK, objectType);
+			generator.returnValue();
+			generator.endMethod();
+
+			//Kept as small as possible so it inlines, only the first call for each entry needs to take the lock
+			generator = new GeneratorAdapter(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC, getStruct, null, null, writer);
+			Label made = generator.newLabel();
+			generator.loadThis();
+			generator.getField(thisType, "struct", structType);
+			generator.dup();
+			generator.ifNonNull(made);
+			generator.pop();
+			generator.loadThis();
+			generator.invokeConstructor(thisType, new Method(LAZY_MAKER, structType, new Type[0]));
+			generator.mark(made);
+			generator.returnValue();
+			generator.endMethod();
+
+			//Shared between the entries using the subclass, but only held the first time each entry needs its struct
+			generator = new GeneratorAdapter(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC, new Method(LAZY_MAKER, structType, new Type[0]), null, null, writer);
+			Label locked = generator.newLabel(), set = generator.newLabel(), unlocked = generator.newLabel(), failed = generator.newLabel();
+			int lock = generator.newLocal(objectType);
+			generator.getStatic(thisType, LAZY_LOCK, objectType);
+			generator.dup();
+			generator.storeLocal(lock);
+			generator.monitorEnter();
+			generator.mark(locked);
+			generator.loadThis();
+			generator.getField(thisType, "struct", structType);
+			generator.dup();
+			generator.ifNonNull(set); //Another thread got here first
+			generator.pop();
+			generator.newInstance(structType);
+			generator.dup();
+			generator.invokeConstructor(structType, new Method("<init>", "()V"));
+			generator.dup();
+			generator.loadThis();
+			generator.putField(ownerType, OWNER, enumType);
+			generator.dup();
+			generator.loadThis();
+			generator.swap();
+			generator.putField(thisType, "struct", structType);
+			generator.mark(set);
+			generator.loadLocal(lock);
+			generator.monitorExit();
+			generator.mark(unlocked);
+			generator.returnValue();
+
+			//As javac would, make sure the lock is let go of even if making the struct throws
+			generator.mark(failed);
+			generator.loadLocal(lock);
+			generator.monitorExit();
+			generator.throwException();
+			generator.visitTryCatchBlock(locked, unlocked, failed, null);
+			generator.endMethod();
+		} else {
+			generator.loadThis();
+			generator.newInstance(structType);
+			generator.dup();
+			generator.invokeConstructor(structType, new Method("<init>", "()V"));
+			generator.dup(); //Let the struct know which entry it belongs to, given the subclass is shared between them
+			generator.loadThis();
+			generator.putField(ownerType, OWNER, enumType);
+			generator.putField(thisType, "struct", structType);
+			generator.returnValue();
+			generator.endMethod();
+
+			writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "struct", structType.getDescriptor(), null, null).visitEnd();
+		}
 
 		Map<String, String> gains = new HashMap<>();
-		Map<String, MethodNode> toMatch = enumNode.methods.stream().collect(Collectors.toMap(m -> m.name + m.desc, Function.identity()));
-		Map<String, MethodNode> overrides = getParentStructs(struct).stream().flatMap(node -> node.methods.stream()).peek(m -> {
+		MemberIndex index = MemberIndex.of(enumNode);
+		Map<String, MethodNode> overrides = parents.stream().flatMap(node -> node.getMethods().stream()).peek(m -> {
 			AnnotationNode annotation = Annotations.getInvisible(m, CorrectedMethod.class);
 
 			List<AnnotationNode> corrections;
@@ -176,7 +475,7 @@ final class EnumSubclasser {
 				corrections = Collections.singletonList(annotation);
 			} else {
 				AnnotationNode annotations = Annotations.getInvisible(m, CorrectedMethods.class);
-				corrections = annotations != null ? Annotations.getValue(annotation) : Collections.emptyList();
+				corrections = annotations != null ? Annotations.getValue(annotations) : Collections.emptyList();
 			}
 
 			for (AnnotationNode correction : corrections) {
@@ -187,7 +486,10 @@ final class EnumSubclasser {
 				assert previous == null || previous.equals(to);
 			}
 		}).filter(m -> m.name.charAt(0) != '<' && !Modifier.isPrivate(m.access) && !Modifier.isStatic(m.access)).map(m -> m.name + m.desc)
-				.filter(toMatch::containsKey).collect(Collectors.toMap(Function.identity(), toMatch::get));
+				.distinct().collect(HashMap::new, (map, key) -> { //Parents can override the same methods
+					MethodNode override = index.getMethod(key);
+					if (override != null) map.put(key, override);
+				}, Map::putAll);
 
 		for (Entry<String, MethodNode> entry : overrides.entrySet()) {
 			MethodNode override = entry.getValue();
@@ -200,7 +502,11 @@ final class EnumSubclasser {
 			generator = new GeneratorAdapter(override.access & ~Opcodes.ACC_ABSTRACT, method, override.signature,
 					override.exceptions.stream().map(Type::getObjectType).toArray(Type[]::new), writer);
 			generator.loadThis();
-			generator.getField(thisType, "struct", structType);
+			if (struct.isLazy()) {
+				generator.invokeConstructor(thisType, getStruct); //invokespecial as the getter is private
+			} else {
+				generator.getField(thisType, "struct", structType);
+			}
 			generator.loadArgs();
 			generator.invokeVirtual(structType, method);
 			generator.returnValue();
@@ -209,13 +515,17 @@ final class EnumSubclasser {
 
 		for (Entry<String, String> entry : gains.entrySet()) {
 			String to = entry.getValue();
-			assert !toMatch.containsKey(to); //Surely Mojang wouldn't have a method using our wonderful names
+			if (index.getMethod(to) != null) continue; //Another subclass has already added the bridge
 
+			//The super bridges go on the enum itself so that any subclass (and thus struct) can use them
 			method = makeMethod(to); //Needs to be public so the struct can call it
-			generator = new GeneratorAdapter(Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE, method, null, null, writer);
+			MethodNode bridge = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE, method.getName(), method.getDescriptor(), null, null);
+			index.addMethod(bridge);
+
+			generator = new GeneratorAdapter(bridge.access, method, bridge);
 			generator.loadThis();
 			generator.loadArgs();
-			generator.invokeConstructor(enumType, makeMethod(entry.getKey()));
+			generator.invokeConstructor(enumType, makeMethod(entry.getKey())); //invokespecial on the enum's own method avoids dispatching back to the subclass
 			generator.returnValue();
 			generator.endMethod();
 		}
@@ -225,173 +535,229 @@ final class EnumSubclasser {
 		return writer.toByteArray();
 	}
 
-	private static Method makeMethod(String nameDesc) {
-		int split = nameDesc.indexOf('(');
-		return new Method(nameDesc.substring(0, split), nameDesc.substring(split));
-	}
+	private static void inlineStruct(ClassWriter writer, ClassNode enumNode, StructClass struct, String anonymousClassName, String constructor) {
+		if (loadSuperStruct(struct.getParent()) != null) {
+			throw new IllegalStateException("Inlined struct " + struct.name + " doesn't directly extend a Mixin, instead extends " + struct.getParent());
+		}
+
+		Type enumType = Type.getObjectType(enumNode.name);
+		Method method = new Method("<init>", constructor);
+		GeneratorAdapter generator = new GeneratorAdapter(0, method, null, null, writer);
+		generator.loadThis();
+		generator.loadArgs();
+		generator.invokeConstructor(enumType, method);
+		generator.returnValue();
+		generator.endMethod();
 
-	private static synchronized StructClass loadStruct(String enumDescriptor, String newOwner, EnumAddition addition) {
-		StructClass node = ADDITION_TO_CHANGES.get(addition);
-		if (node != null && node.isFixed()) return node;
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put(struct.name, anonymousClassName); //this is now the subclass
+		mappings.put(struct.getParent(), enumNode.name); //Anything on the Mixin is now really on the enum
+		SimpleRemapper remapper = new SimpleRemapper(mappings);
 
-		node = STRUCTS_TO_CLASS.get(addition.structClass);
-		if (node != null && node.isFixed()) {
-			ADDITION_TO_CHANGES.put(addition, node);
-			return node;
+		Set<String> overridable = new HashSet<>();
+		for (MethodNode m : enumNode.methods) {
+			if (m.name.charAt(0) != '<' && !Modifier.isPrivate(m.access) && !Modifier.isStatic(m.access)) {
+				assert !Modifier.isFinal(m.access) || struct.getMethods().stream().noneMatch(o -> m.name.equals(o.name) && m.desc.equals(o.desc));
+				overridable.add(m.name + m.desc);
+			}
 		}
 
-		if (node == null) {
-			StructClassVisitor visitor;
-			try (InputStream in = EnumSubclasser.class.getResourceAsStream(addition.structClass + ".class")) {
-				assert in != null: "Unable to find provided struct class " + addition.structClass;
-				new ClassReader(in).accept(visitor = new StructClassVisitor(), ClassReader.SKIP_FRAMES); //Recalculating frames is slow, but we are changing a lot of things
-			} catch (IOException e) {
-				throw new RuntimeException("Unable to find provided struct class " + addition.structClass, e);
+		for (MethodNode m : struct.getMethods()) {
+			if (m.name.charAt(0) == '<') continue; //Already checked the constructor is trivial, which is all that will be here
+			if (isVisibilityBridge(m, struct.getParent())) continue; //The enum's own method is already visible
+
+			int access = m.access;
+			if (!Modifier.isPrivate(access) && !Modifier.isStatic(access) && overridable.contains(m.name + m.desc)) {
+				access |= Opcodes.ACC_FINAL; //Nothing can extend the subclass anyway, but it gives the JIT a hint
 			}
 
-			assert !visitor.isMixin();
-			node = visitor.asStruct();
+			MethodVisitor visitor = writer.visitMethod(access, m.name, remapper.mapMethodDesc(m.desc), remapper.mapSignature(m.signature, false),
+					m.exceptions == null ? null : remapper.mapTypes(m.exceptions.toArray(new String[0])));
+			m.accept(new MethodRemapper(GeneratedClasses.strip(visitor), remapper));
 		}
+	}
+
+	private static boolean isVisibilityBridge(MethodNode method, String parent) {
+		if ((method.access & Opcodes.ACC_BRIDGE) == 0) return false;
+
+		for (AbstractInsnNode insn : method.instructions) {
+			if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {
+				MethodInsnNode mInsn = (MethodInsnNode) insn;
+				return parent.equals(mInsn.owner) && method.name.equals(mInsn.name) && method.desc.equals(mInsn.desc);
+			}
+		}
+
+		return false;
+	}
+
+	private static Method makeMethod(String nameDesc) {
+		int split = nameDesc.indexOf('(');
+		return new Method(nameDesc.substring(0, split), nameDesc.substring(split));
+	}
+
+	private static StructClass loadStruct(String enumName, String structClass) {
+		StructClass node = loadSuperStruct(structClass);
+		if (node == null) throw new IllegalArgumentException("Tried to use Mixin " + structClass + " as a struct");
+		if (node.isFixed()) return node;
 
 		List<StructClass> parents = getParentStructs(node);
 		assert !parents.isEmpty() && parents.get(0) == node;
 
-		//Make sure to remove the Mixin class from the deepest parent's hierarchy
-		String mixin = Iterables.getLast(parents).switchParent(Object.class.getName().replace('.', '/'));
+		//The deepest parent is the one extending the Mixin, which will be removed from the hierarchy
+		StructClass root = Iterables.getLast(parents);
+		//Fixed from the root down, so a fixed struct (which the check above takes at its word) always has fixed parents
+		for (StructClass struct : Lists.reverse(parents)) {
+			synchronized (struct) {//Parents can be shared between structs, but only need fixing once
+				if (!struct.isFixed()) fixStruct(struct, root, enumName);
+			}
+		}
+
+		return node;
+	}
+
+	private static void fixStruct(StructClass struct, StructClass root, String enumName) {
+		String mixin = root.getParent();
+		String enumDescriptor = 'L' + enumName + ';';
+		String parent = struct == root ? Object.class.getName().replace('.', '/') : struct.getParent();
 
-		for (StructClass struct : parents) {
-			Map<String, String> bridges = new HashMap<>();
+		Map<String, String> bridges = new HashMap<>();
 
-			for (MethodNode method : struct.methods) {
-				Map<String, String> replacements = new HashMap<>();
+		for (MethodNode method : struct.getMethods()) {
+			Map<String, String> replacements = new HashMap<>();
 
-				for (ListIterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();) {
-					AbstractInsnNode insn = it.next();
+			for (ListIterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();) {
+				AbstractInsnNode insn = it.next();
 
-					if (insn.getType() == AbstractInsnNode.METHOD_INSN && mixin.equals(((MethodInsnNode) insn).owner)) {
-						assert !struct.isFixed();
-						MethodInsnNode mInsn = (MethodInsnNode) insn;
+				if (insn.getType() == AbstractInsnNode.METHOD_INSN && mixin.equals(((MethodInsnNode) insn).owner)) {
+					MethodInsnNode mInsn = (MethodInsnNode) insn;
 
-						assert insn.getOpcode() != Opcodes.INVOKESTATIC;
-						int argSize = Type.getArgumentsAndReturnSizes(mInsn.desc) >> 2;
+					assert insn.getOpcode() != Opcodes.INVOKESTATIC;
+					int argSize = Type.getArgumentsAndReturnSizes(mInsn.desc) >> 2;
 
-						boolean easySwap = true;
-						if (argSize > 1) {//Implicit this gives 1 for ()V
-							AbstractInsnNode previous = insn;
+					boolean easySwap = true;
+					if (argSize > 1) {//Implicit this gives 1 for ()V
+						AbstractInsnNode previous = insn;
 
-							for (int i = 0; i < argSize; i++) {
-								previous = previous.getPrevious();
+						for (int i = 0; i < argSize; i++) {
+							previous = previous.getPrevious();
 
-								if (previous.getType() != AbstractInsnNode.VAR_INSN || !isVarLoad(previous.getOpcode())) {
-									easySwap = false; //Not just a straight loading of all the parameters
-									break;
-								}
+							if (previous.getType() != AbstractInsnNode.VAR_INSN || !isVarLoad(previous.getOpcode())) {
+								easySwap = false; //Not just a straight loading of all the parameters
+								break;
 							}
 						}
+					}
 
-						if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {//super call, needs special handling
-							if ("<init>".equals(mInsn.name)) {//Make sure not to screw up the class's constructor
-								mInsn.owner = struct.getParent();
-								continue; //Don't need the stack replacement
-							} else {
-								String newName = "MMsuper£" + mInsn.name;
-								replacements.put(mInsn.name + mInsn.desc, newName + mInsn.desc);
-
-								mInsn.owner = easySwap ? newOwner : struct.name;
-								mInsn.name = newName;
-								if (easySwap) mInsn.setOpcode(Opcodes.INVOKEVIRTUAL);
-							}
+					if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {//super call, needs special handling
+						if ("<init>".equals(mInsn.name)) {//Make sure not to screw up the class's constructor
+							mInsn.owner = parent;
+							continue; //Don't need the stack replacement
 						} else {
-							mInsn.owner = easySwap ? newOwner : struct.name;
-							if (!easySwap) mInsn.setOpcode(Opcodes.INVOKESPECIAL);
+							String newName = "MMsuper£" + mInsn.name;
+							replacements.put(mInsn.name + mInsn.desc, newName + mInsn.desc);
+
+							mInsn.owner = easySwap ? enumName : struct.name;
+							mInsn.name = newName;
+							if (easySwap) mInsn.setOpcode(Opcodes.INVOKEVIRTUAL);
 						}
+					} else {
+						mInsn.owner = easySwap ? enumName : struct.name;
+						if (!easySwap) mInsn.setOpcode(Opcodes.INVOKESPECIAL);
+					}
 
-						if (easySwap) {//No arguments to get caught up in, previous instruction should be aload_0
-							AbstractInsnNode previous = insn;
-							assert argSize >= 1; //We need to back at least one instruction
-							for (int i = 0; i < argSize; i++) previous = previous.getPrevious();
+					if (easySwap) {//No arguments to get caught up in, previous instruction should be aload_0
+						AbstractInsnNode previous = insn;
+						assert argSize >= 1; //We need to back at least one instruction
+						for (int i = 0; i < argSize; i++) previous = previous.getPrevious();
 
-							if (previous.getType() != AbstractInsnNode.VAR_INSN || ((VarInsnNode) previous).var != 0) {
-								//Well it's not aload_0, don't know what to do now :|
-								throw new IllegalStateException("Not quite sure how to handle the bytecode, previous was " + previous.getType());
-							}
-							assert isVarLoad(previous.getOpcode()); //Should be
+						if (previous.getType() != AbstractInsnNode.VAR_INSN || ((VarInsnNode) previous).var != 0) {
+							//Well it's not aload_0, don't know what to do now :|
+							throw new IllegalStateException("Not quite sure how to handle the bytecode, previous was " + previous.getType());
+						}
+						assert isVarLoad(previous.getOpcode()); //Should be
 
-							method.instructions.insert(previous, new TypeInsnNode(Opcodes.CHECKCAST, newOwner));
-							method.instructions.set(previous, new FieldInsnNode(Opcodes.GETSTATIC, newOwner, addition.name, enumDescriptor));
-						} else {//Any number of arguments to trip up with, easier to make a bridge
-							String bridge = "MMbridge£" + (mInsn.name.startsWith("MMsuper£") ? mInsn.name.substring(8) : mInsn.name);
+						method.instructions.insert(previous, new FieldInsnNode(Opcodes.GETFIELD, root.name, OWNER, enumDescriptor));
+					} else {//Any number of arguments to trip up with, easier to make a bridge
+						String bridge = "MMbridge£" + (mInsn.name.startsWith("MMsuper£") ? mInsn.name.substring(8) : mInsn.name);
 
-							String previous = bridges.put(bridge + mInsn.desc, mInsn.name + mInsn.desc);
-							assert previous == null || previous.equals(mInsn.name + mInsn.desc);
+						String previous = bridges.put(bridge + mInsn.desc, mInsn.name + mInsn.desc);
+						assert previous == null || previous.equals(mInsn.name + mInsn.desc);
 
-							mInsn.name = bridge;
-						}
+						mInsn.name = bridge;
 					}
 				}
+			}
 
-				switch (replacements.size()) {
-				case 0:
-					break;
-
-				case 1: {
-					Entry<String, String> entry = Iterables.getOnlyElement(replacements.entrySet());
-					Annotations.setInvisible(method, CorrectedMethod.class, "from", entry.getKey(), "to", entry.getValue());
-					break;
-				}
+			switch (replacements.size()) {
+			case 0:
+				break;
 
-				default: {
-					AnnotationNode annotation = new AnnotationNode(Type.getDescriptor(CorrectedMethods.class));
-					AnnotationVisitor annotations = annotation.visitArray("value");
+			case 1: {
+				Entry<String, String> entry = Iterables.getOnlyElement(replacements.entrySet());
+				Annotations.setInvisible(method, CorrectedMethod.class, "from", entry.getKey(), "to", entry.getValue());
+				break;
+			}
 
-					String correctedMethod = Type.getDescriptor(CorrectedMethod.class);
-					for (Entry<String, String> entry : replacements.entrySet()) {
-						AnnotationVisitor nest = annotations.visitAnnotation(null, correctedMethod);
-						nest.visit("from", entry.getKey());
-						nest.visit("to", entry.getValue());
-						nest.visitEnd();
-					}
+			default: {
+				AnnotationNode annotation = new AnnotationNode(Type.getDescriptor(CorrectedMethods.class));
+				AnnotationVisitor annotations = annotation.visitArray("value");
 
-					annotations.visitEnd();
-					method.invisibleAnnotations.add(annotation);
-					break;
-				}
+				String correctedMethod = Type.getDescriptor(CorrectedMethod.class);
+				for (Entry<String, String> entry : replacements.entrySet()) {
+					AnnotationVisitor nest = annotations.visitAnnotation(null, correctedMethod);
+					nest.visit("from", entry.getKey());
+					nest.visit("to", entry.getValue());
+					nest.visitEnd();
 				}
-			}
 
-			if (!bridges.isEmpty()) {
-				Type newOwnerType = Type.getObjectType(newOwner);
-				Type enumType = Type.getType(enumDescriptor);
-
-				for (Entry<String, String> entry : bridges.entrySet()) {
-					Method bridge = makeMethod(entry.getKey());
-
-					MethodNode method = new MethodNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE, bridge.getName(), bridge.getDescriptor(), null, null);
-					struct.methods.add(method);
-
-					GeneratorAdapter generator = new GeneratorAdapter(method.access, bridge, method);
-					generator.getStatic(newOwnerType, addition.name, enumType);
-					generator.checkCast(newOwnerType);
-					generator.loadArgs();
-					generator.invokeVirtual(newOwnerType, makeMethod(entry.getValue()));
-					generator.returnValue();
-					//int maxStack = Type.getArgumentsAndReturnSizes(bridge.getDescriptor()) >> 2;
-					//method.visitMaxs(maxStack, maxStack); //Mixin will do this for us
-					generator.endMethod();
-				}
+				annotations.visitEnd();
+				if (method.invisibleAnnotations == null) method.invisibleAnnotations = new ArrayList<>(1);
+				method.invisibleAnnotations.add(annotation);
+				break;
+			}
 			}
+		}
 
-			struct.setFixed();
+		if (!bridges.isEmpty()) {
+			Type ownerType = Type.getObjectType(root.name);
+			Type enumType = Type.getType(enumDescriptor);
+
+			for (Entry<String, String> entry : bridges.entrySet()) {
+				Method bridge = makeMethod(entry.getKey());
+
+				MethodNode method = new MethodNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE, bridge.getName(), bridge.getDescriptor(), null, null);
+				struct.getMethods().add(method);
+
+				GeneratorAdapter generator = new GeneratorAdapter(method.access, bridge, method);
+				generator.loadThis();
+				generator.getField(ownerType, OWNER, enumType);
+				generator.loadArgs();
+				generator.invokeVirtual(enumType, makeMethod(entry.getValue()));
+				generator.returnValue();
+				//int maxStack = Type.getArgumentsAndReturnSizes(bridge.getDescriptor()) >> 2;
+				//method.visitMaxs(maxStack, maxStack); //Mixin will do this for us
+				generator.endMethod();
+			}
 		}
 
-		ADDITION_TO_CHANGES.put(addition, node);
-		return node;
+		if (struct == root) {
+			struct.extraFields.add(new FieldNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC, OWNER, enumDescriptor, null, null));
+		}
+		struct.useFor(enumName);
+		struct.setFixed(parent);
 	}
 
 	private static boolean isVarLoad(int opcode) {
 		return opcode == Opcodes.ILOAD || opcode == Opcodes.LLOAD || opcode == Opcodes.FLOAD || opcode == Opcodes.DLOAD ||opcode == Opcodes.ALOAD;
 	}
 
+	static boolean isInlineStruct(String name) {
+		StructClass struct = loadSuperStruct(name);
+		if (struct == null) throw new IllegalArgumentException("Mixins can't be structs");
+
+		return struct.isInline();
+	}
+
 	static List<StructClass> getParentStructs(String name) {
 		StructClass start = loadSuperStruct(name);
 		if (start == null) throw new IllegalArgumentException("Cannot get parents of Mixins");
@@ -410,102 +776,72 @@ final class EnumSubclasser {
 			parent = child.getParent();
 
 			if (parent == null || parent.startsWith("java/lang/")) {
-				if (child.isFixed()) {
-					return parents; //Reached the ex-Mixin extending class
-				} else {
-					throw new IllegalStateException(parents.stream().map(node -> node.name)
-							.collect(Collectors.joining("Missing Mixin from struct hierachy ", " => ", " => " + parent)));
-				}
+				throw new IllegalStateException(parents.stream().map(node -> node.name)
+						.collect(Collectors.joining("Missing Mixin from struct hierachy ", " => ", " => " + parent)));
 			}
 		} while ((child = loadSuperStruct(parent)) != null);
 
 		return parents;
 	}
 
-	private static synchronized StructClass loadSuperStruct(String name) {
-		StructClass struct = STRUCTS_TO_CLASS.get(name);
-		if (struct != null) return struct;
-
-		//If we recognise this as a Mixin there's no need to load it
-		if (STRUCT_MIXINS.contains(name)) return null;
-
-		//Maybe one of the existing enum additions already uses what we want
-		for (Entry<EnumAddition, StructClass> entry : ADDITION_TO_CHANGES.entrySet()) {
-			if (entry.getKey().structClass.equals(name)) {
-				return entry.getValue();
-			}
-		}
+	private static StructClass loadSuperStruct(String name) {
+		//Each class is only read once, after which it is either a known struct or a known Mixin
+		StructClass struct = STRUCTS.computeIfAbsent(name, EnumSubclasser::readStruct);
+		return struct != NOT_STRUCT ? struct : null;
+	}
 
-		StructClassVisitor node;
+	private static StructClass readStruct(String name) {
+		byte[] bytecode;
 		try (InputStream in = EnumSubclasser.class.getResourceAsStream('/' + name + ".class")) {
-			assert in != null: "Unable to find provided struct class " + name;
-			new ClassReader(in).accept(node = new StructClassVisitor(), ClassReader.SKIP_FRAMES);
+			if (in == null) throw new IllegalStateException("Unable to find provided struct class " + name);
+			bytecode = ByteStreams.toByteArray(in);
 		} catch (IOException e) {
 			throw new RuntimeException("Unable to find provided struct class " + name, e);
 		}
 
-		if (node.isMixin()) {
-			//We've found the defining Mixin, nothing more to look for
-			STRUCT_MIXINS.add(name);
-			return null;
-		} else {
-			struct = node.asStruct();
-			STRUCTS_TO_CLASS.put(name, struct);
-			return struct;
-		}
+		//Only the header is needed to work out the hierarchy, the methods can wait until the struct is used
+		StructClassVisitor node = new StructClassVisitor(false);
+		new ClassReader(bytecode).accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		//If we've found the defining Mixin there's nothing more to look for
+		return node.isMixin() ? NOT_STRUCT : node.asStruct(bytecode);
 	}
 
-	static Consumer<ClassNode> makeStructFixer(EnumAddition addition, String target) {
-		return node -> {
-			assert node.name.equals(addition.structClass);
+	/** Lets go of the methods of the structs used by the given enum, as it has been defined so won't need any more subclasses */
+	static void enumDefined(String enumName) {
+		for (StructClass struct : STRUCTS.values()) {
+			if (struct != NOT_STRUCT && struct.isUsedBy(enumName)) struct.enumDefined();
+		}
+	}
 
-			StructClass replacement;
-			synchronized (EnumSubclasser.class) {
-				replacement = ADDITION_TO_CHANGES.get(addition);
+	static Consumer<ClassNode> makeStructFixer(String struct, String target) {
+		Consumer<ClassNode> fixer = node -> {
+			assert node.name.equals(struct);
 
-				if (replacement == null) {
-					try {//Don't recognise the addition, force class load the enum
-						Class.forName(target.replace('/', '.'));
-					} catch (ClassNotFoundException e) {
-						throw new IllegalStateException("Unable to load target enum " + target + " for " + addition.name + " => " + addition.structClass);
-					}
+			StructClass replacement = STRUCTS.get(struct);
 
-					replacement = ADDITION_TO_CHANGES.get(addition);
-					if (replacement == null) throw new IllegalStateException("Unable to find " + target + " for " + addition.name + " => " + addition.structClass);
+			if (replacement == null || !replacement.isFixed()) {
+				try {//Struct hasn't been used yet, force class load the enum (without holding any locks of our own)
+					//Only loading it makes the subclasses, initialising it would make the entries which need this struct
+					Class.forName(target.replace('/', '.'), false, EnumSubclasser.class.getClassLoader());
+				} catch (ClassNotFoundException e) {
+					throw new IllegalStateException("Unable to load target enum " + target + " for struct " + struct);
 				}
-			}
-			assert replacement != null;
-
-			applyStructFixes(node, replacement);
-		};
-	}
 
-	static Consumer<ClassNode> makeStructFixer(String parent, String target) {
-		return node -> {
-			StructClass replacement;
-			synchronized (EnumSubclasser.class) {
-				replacement = STRUCTS_TO_CLASS.get(parent);
-
-				if (replacement == null) {
-					try {//Don't recognise the addition, force class load the enum
-						Class.forName(target.replace('/', '.'));
-					} catch (ClassNotFoundException e) {
-						throw new IllegalStateException("Unable to load target enum " + target + " for super struct " + parent);
-					}
-
-					replacement = STRUCTS_TO_CLASS.get(parent);
-					if (replacement == null) throw new IllegalStateException("Unable to find " + target + " for super struct " + parent);
-				}
+				replacement = STRUCTS.get(struct);
+				if (replacement == null || !replacement.isFixed()) throw new IllegalStateException("Unable to find " + target + " for struct " + struct);
 			}
-			assert replacement != null;
 
 			applyStructFixes(node, replacement);
 		};
+		Verification.attribute(fixer, struct.replace('/', '.')); //The struct comes from the mod which added it
+		return fixer;
 	}
 
 	private static void applyStructFixes(ClassNode target, StructClass fixes) {
-		assert fixes.isFixed();
-		target.superName = fixes.getParent();
-		target.methods = fixes.methods;
+		target.superName = fixes.getFixedParent();
+		target.methods = fixes.takeMethods(); //The class being defined takes over the methods
+		target.fields.addAll(fixes.extraFields);
+		GeneratedClasses.strip(target);
 	}
-}
\ No newline at end of file
+}
@@ -18,11 +18,11 @@ import org.spongepowered.asm.mixin.transformer.ext.IExtension;
 import org.spongepowered.asm.mixin.transformer.ext.ITargetClassContext;
 
 final class Extension implements IExtension {
-	private final String mixinPackage;
+	private final String mixinDescriptor;
 	private final Map<String, Consumer<ClassNode>> classReplacers;
 
 	Extension(String mixinPackage, Map<String, Consumer<ClassNode>> classReplacers) {
-		this.mixinPackage = mixinPackage;
+		mixinDescriptor = 'L' + mixinPackage;
 		this.classReplacers = classReplacers;
 	}
 
@@ -48,11 +48,19 @@ final class Extension implements IExtension {
 		if (!info.isMixin()) {//Shouldn't be but checking doesn't hurt
 			ClassNode node = context.getClassNode();
 
-			if (node.signature.contains(mixinPackage + info.getName())) {
-				//For some reason Mixin likes to tack interfaces into the Mixin'd class's signature
-				//This also likes to crash if the JVM has to resolve said signature
-				node.signature = node.signature.replace('L' + mixinPackage + info.getName() + ';', "");
+			//For some reason Mixin likes to tack interfaces into the Mixin'd class's signature
+			//This also likes to crash if the JVM has to resolve said signature
+			String signature = node.signature;
+			if (signature != null) {
+				//Any of our Mixins could be there, including those shared between many targets
+				for (int start; (start = signature.indexOf(mixinDescriptor)) >= 0;) {
+					signature = signature.substring(0, start).concat(signature.substring(signature.indexOf(';', start) + 1));
+				}
+
+				node.signature = signature;
 			}
+
+			if (Verification.ENABLED) Verification.snapshot(node);
 		}
 	}
 
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.ListIterator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Logger;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Keeps track of how much MM generates, and when opted in to (via {@code -Dmm.lean=true}) keeps the classes it makes or
+ * changes as small as possible by leaving out anything the JVM doesn't need to run them, such as debug information and
+ * invisible annotations. Without debug information stack traces through struct methods won't have line numbers.
+ */
+final class GeneratedClasses {
+	static final boolean LEAN = Boolean.getBoolean("mm.lean");
+	private static final LongAdder CLASSES = new LongAdder(), CLASS_BYTES = new LongAdder();
+	private static final LongAdder MIXINS = new LongAdder(), MIXIN_BYTES = new LongAdder();
+
+	private GeneratedClasses() {
+	}
+
+	static byte[] generatedClass(byte[] bytecode, String source) {
+		CLASSES.increment();
+		CLASS_BYTES.add(bytecode.length);
+		if (Verification.ENABLED) Verification.generated(bytecode, source);
+		return bytecode;
+	}
+
+	static byte[] generatedMixin(byte[] bytecode) {
+		MIXINS.increment();
+		MIXIN_BYTES.add(bytecode.length);
+		return bytecode;
+	}
+
+	/** Wraps the given visitor to skip anything which isn't needed at runtime, if being lean */
+	static MethodVisitor strip(MethodVisitor visitor) {
+		if (!LEAN) return visitor;
+
+		return new MethodVisitor(Opcodes.ASM7, visitor) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+				return visible ? super.visitAnnotation(descriptor, visible) : null;
+			}
+
+			@Override
+			public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+				return visible ? super.visitParameterAnnotation(parameter, descriptor, visible) : null;
+			}
+
+			@Override
+			public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+				return visible ? super.visitTypeAnnotation(typeRef, typePath, descriptor, visible) : null;
+			}
+
+			@Override
+			public void visitAttribute(Attribute attribute) {
+			}
+		};
+	}
+
+	/** Removes anything from the given class which isn't needed at runtime, if being lean */
+	static void strip(ClassNode node) {
+		if (!LEAN) return;
+
+		node.sourceFile = null;
+		node.sourceDebug = null;
+		node.invisibleAnnotations = null;
+		node.invisibleTypeAnnotations = null;
+		node.attrs = null;
+
+		for (FieldNode field : node.fields) {
+			field.invisibleAnnotations = null;
+			field.invisibleTypeAnnotations = null;
+			field.attrs = null;
+		}
+
+		for (MethodNode method : node.methods) {
+			method.invisibleAnnotations = null;
+			method.invisibleTypeAnnotations = null;
+			method.invisibleParameterAnnotations = null;
+			method.invisibleAnnotableParameterCount = 0;
+			method.attrs = null;
+			method.localVariables = null;
+			method.visibleLocalVariableAnnotations = null;
+			method.invisibleLocalVariableAnnotations = null;
+
+			for (ListIterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext();) {
+				if (it.next().getType() == AbstractInsnNode.LINE) it.remove();
+			}
+		}
+	}
+
+	static void report(Logger logger) {
+		if (!LEAN && !Profiler.ENABLED) return;
+
+		logger.info(String.format("Generated %d classes (%d bytes) and %d Mixins (%d bytes)%s", CLASSES.sum(), CLASS_BYTES.sum(), MIXINS.sum(), MIXIN_BYTES.sum(), LEAN ? " whilst being lean" : ""));
+	}
+}
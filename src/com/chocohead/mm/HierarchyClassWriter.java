@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link ClassWriter} which works out common super classes from the class files themselves rather than by loading the
+ * classes, which both avoids loading classes early and is a good deal faster.
+ */
+final class HierarchyClassWriter extends ClassWriter {
+	static final class ClassHeader {
+		final String superName;
+		final boolean isInterface;
+
+		ClassHeader(String superName, boolean isInterface) {
+			this.superName = superName;
+			this.isInterface = isInterface;
+		}
+	}
+	/** Placeholder in {@link #HEADERS} for classes which couldn't be found */
+	private static final ClassHeader MISSING = new ClassHeader(null, false);
+	private static final Map<String, ClassHeader> HEADERS = new ConcurrentHashMap<>();
+	private final Map<String, ClassHeader> extraClasses = new HashMap<>();
+
+	HierarchyClassWriter(int flags) {
+		super(flags);
+	}
+
+	/** Adds a class which doesn't exist as a resource yet, such as the one being written */
+	void addClass(String name, String superName, boolean isInterface) {
+		extraClasses.put(name, new ClassHeader(superName, isInterface));
+	}
+
+	private ClassHeader getHeader(String name) {
+		ClassHeader header = extraClasses.get(name);
+		if (header != null) return header;
+
+		return findHeader(name);
+	}
+
+	/** Finds the header of the given class from its class file, or {@code null} if it can't be found */
+	static ClassHeader findHeader(String name) {
+		ClassHeader header = HEADERS.computeIfAbsent(name, HierarchyClassWriter::readHeader);
+		return header != MISSING ? header : null;
+	}
+
+	/** Remembers the header of a class which has already been read, so it doesn't need reading again if it's needed */
+	static void cacheHeader(String name, byte[] bytecode) {
+		HEADERS.computeIfAbsent(name, k -> readHeader(new ClassReader(bytecode)));
+	}
+
+	private static ClassHeader readHeader(String name) {
+		try (InputStream in = HierarchyClassWriter.class.getResourceAsStream('/' + name + ".class")) {
+			if (in == null) return MISSING;
+
+			return readHeader(new ClassReader(in));
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading " + name, e);
+		}
+	}
+
+	private static ClassHeader readHeader(ClassReader reader) {
+		//Only the header is looked at, so no need to accept anything
+		return new ClassHeader(reader.getSuperName(), (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+	}
+
+	@Override
+	protected String getCommonSuperClass(String type1, String type2) {
+		if (type1.equals(type2)) return type1;
+
+		ClassHeader header1 = getHeader(type1);
+		ClassHeader header2 = getHeader(type2);
+		//If we can't find either class the normal approach won't be able to either, but it will complain better
+		if (header1 == null || header2 == null) return super.getCommonSuperClass(type1, type2);
+		if (header1.isInterface || header2.isInterface) return "java/lang/Object";
+
+		Set<String> parents = new HashSet<>();
+		for (String type = type1; type != null; type = getSuperName(type)) {
+			parents.add(type);
+		}
+
+		for (String type = type2; type != null; type = getSuperName(type)) {
+			if (parents.contains(type)) return type;
+		}
+
+		return "java/lang/Object";
+	}
+
+	private String getSuperName(String type) {
+		ClassHeader header = getHeader(type);
+		if (header == null) throw new IllegalStateException("Unable to find " + type + " in hierarchy");
+		return header.superName;
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * An index of the class hierarchy of every mod (and the game), read from the class files without loading anything.
+ * Only the super class and the methods which could need widening (ie those which are neither public nor private)
+ * are kept, as that's all that's needed to find the overrides of a method which has been made public.
+ */
+final class HierarchyIndex {
+	private static final class ClassEntry {
+		final String superName;
+		final Set<String> narrowMethods;
+
+		ClassEntry(String superName, Set<String> narrowMethods) {
+			this.superName = superName;
+			this.narrowMethods = narrowMethods;
+		}
+	}
+	private static final class EntryReader extends ClassVisitor {
+		private final Set<String> narrowMethods = new HashSet<>();
+		String name, superName;
+		boolean isInterface;
+
+		EntryReader() {
+			super(Opcodes.ASM7);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+			this.name = name;
+			this.superName = superName;
+			isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+			if ((access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC)) == 0 && name.charAt(0) != '<') {
+				narrowMethods.add(name + descriptor);
+			}
+
+			return null;
+		}
+
+		ClassEntry asEntry() {
+			return new ClassEntry(superName, narrowMethods.isEmpty() ? Collections.emptySet() : narrowMethods);
+		}
+	}
+	/** Bumped whenever the cache format changes */
+	private static final int CACHE_VERSION = 1;
+	private final Map<String, List<String>> children = new HashMap<>();
+	private final Map<String, ClassEntry> classes;
+
+	private HierarchyIndex(Map<String, ClassEntry> classes) {
+		this.classes = classes;
+
+		for (Entry<String, ClassEntry> entry : classes.entrySet()) {
+			String parent = entry.getValue().superName;
+			if (parent != null) children.computeIfAbsent(parent, k -> new ArrayList<>()).add(entry.getKey());
+		}
+	}
+
+	static HierarchyIndex build(Collection<Path> roots, Path cacheDir) {
+		//Each mod is independent of the others, so they might as well be read at the same time
+		List<Map<String, ClassEntry>> mods = roots.parallelStream().map(root -> {
+			try {
+				Path jar = findJar(root);
+				return jar != null ? readJar(jar, cacheDir) : readTree(root);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Error indexing " + root, e);
+			}
+		}).collect(Collectors.toList());
+
+		Map<String, ClassEntry> classes = new HashMap<>();
+		for (Map<String, ClassEntry> mod : mods) classes.putAll(mod);
+		return new HierarchyIndex(classes);
+	}
+
+	private static Path findJar(Path root) {
+		if (root.getFileSystem() == FileSystems.getDefault()) return null; //Exploded mod, probably in a development environment
+
+		URI uri = root.toUri();
+		if (!"jar".equals(uri.getScheme())) return null;
+
+		String spec = uri.getRawSchemeSpecificPart();
+		int split = spec.indexOf("!/");
+		if (split < 0) return null;
+
+		try {
+			Path jar = Paths.get(new URI(spec.substring(0, split)));
+			return Files.isRegularFile(jar) ? jar : null;
+		} catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+			return null; //Not a jar we can read directly, such as a nested one
+		}
+	}
+
+	private static Map<String, ClassEntry> readTree(Path root) throws IOException {
+		Map<String, ClassEntry> classes = new HashMap<>();
+
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : (Iterable<Path>) files.filter(path -> path.toString().endsWith(".class"))::iterator) {
+				try (InputStream in = Files.newInputStream(file)) {
+					readClass(in, classes);
+				}
+			}
+		}
+
+		return classes;
+	}
+
+	private static Map<String, ClassEntry> readJar(Path jar, Path cacheDir) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			//The central directory has the CRC of every entry, which makes for a cheap checksum of the entire jar
+			Hasher hasher = Hashing.sha256().newHasher();
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+				hasher.putString(entry.getName(), StandardCharsets.UTF_8).putLong(entry.getCrc()).putLong(entry.getSize());
+			}
+			Path cache = cacheDir.resolve(hasher.hash() + ".idx");
+
+			if (Files.isRegularFile(cache)) {
+				try {
+					return readCache(cache);
+				} catch (IOException e) {
+					MM.LOGGER.warn("Error reading hierarchy cache for " + jar + ", will remake", e);
+				}
+			}
+
+			Map<String, ClassEntry> classes = new HashMap<>();
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+				ZipEntry entry = it.nextElement();
+
+				if (entry.getName().endsWith(".class")) {
+					try (InputStream in = zip.getInputStream(entry)) {
+						readClass(in, classes);
+					}
+				}
+			}
+
+			try {
+				writeCache(cache, classes);
+			} catch (IOException e) {
+				MM.LOGGER.warn("Error writing hierarchy cache for " + jar, e);
+			}
+			return classes;
+		}
+	}
+
+	private static void readClass(InputStream in, Map<String, ClassEntry> classes) throws IOException {
+		EntryReader reader = new EntryReader();
+		new ClassReader(in).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		if (!reader.isInterface) classes.put(reader.name, reader.asEntry()); //Interface methods are always public
+	}
+
+	private static Map<String, ClassEntry> readCache(Path cache) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+			if (in.readInt() != CACHE_VERSION) throw new IOException("Unexpected cache version");
+
+			int size = in.readInt();
+			Map<String, ClassEntry> classes = new HashMap<>(size);
+
+			for (int i = 0; i < size; i++) {
+				String name = in.readUTF();
+				String superName = in.readBoolean() ? in.readUTF() : null;
+
+				int methods = in.readInt();
+				Set<String> narrowMethods = methods == 0 ? Collections.emptySet() : new HashSet<>(methods);
+				for (int j = 0; j < methods; j++) {
+					narrowMethods.add(in.readUTF());
+				}
+
+				classes.put(name, new ClassEntry(superName, narrowMethods));
+			}
+
+			return classes;
+		}
+	}
+
+	private static void writeCache(Path cache, Map<String, ClassEntry> classes) throws IOException {
+		Files.createDirectories(cache.getParent());
+		Path temp = Files.createTempFile(cache.getParent(), "hierarchy", ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(CACHE_VERSION);
+			out.writeInt(classes.size());
+
+			for (Entry<String, ClassEntry> entry : classes.entrySet()) {
+				ClassEntry value = entry.getValue();
+				out.writeUTF(entry.getKey());
+
+				out.writeBoolean(value.superName != null);
+				if (value.superName != null) out.writeUTF(value.superName);
+
+				out.writeInt(value.narrowMethods.size());
+				for (String method : value.narrowMethods) {
+					out.writeUTF(method);
+				}
+			}
+		}
+
+		//Swap the finished cache in so a concurrently starting game never sees it half written
+		try {
+			Files.move(temp, cache);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			if (!Files.isRegularFile(cache)) throw e;
+		}
+	}
+
+	/**
+	 * Finds every method which overrides one of the given methods without being public
+	 *
+	 * @param widened The methods being made public, as internal class name to set of method name + descriptor
+	 *
+	 * @return The overriding methods which will need widening to match, in the same format
+	 */
+	Map<String, Set<String>> findNarrowOverrides(Map<String, Set<String>> widened) {
+		Map<String, Set<String>> out = new HashMap<>();
+
+		for (Entry<String, Set<String>> entry : widened.entrySet()) {
+			Queue<String> queue = new ArrayDeque<>(children.getOrDefault(entry.getKey(), Collections.emptyList()));
+
+			String type;
+			while ((type = queue.poll()) != null) {
+				Set<String> overrides = classes.get(type).narrowMethods;
+
+				for (String method : entry.getValue()) {
+					if (overrides.contains(method)) out.computeIfAbsent(type, k -> new HashSet<>()).add(method);
+				}
+
+				queue.addAll(children.getOrDefault(type, Collections.emptyList()));
+			}
+		}
+
+		return out;
+	}
+}
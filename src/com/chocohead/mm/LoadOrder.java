@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Opt-in (via {@code -Dmm.loadOrder=true}) record of the order MM's transformation targets and generated classes are
+ * asked for, which is saved when the game closes. The next launch then reads the targets' bytes in that order ahead of
+ * the game needing them, so they're already in the disk cache when they are, and MM's own caches are filled in advance.
+ */
+final class LoadOrder {
+	static final boolean ENABLED = Boolean.getBoolean("mm.loadOrder");
+	private static final Set<String> RECORDED = Collections.synchronizedSet(new LinkedHashSet<>());
+	private static List<String> previous = Collections.emptyList();
+
+	private LoadOrder() {
+	}
+
+	static void record(String name) {
+		RECORDED.add(name);
+	}
+
+	static void start(Path file) {
+		try {
+			previous = Files.readAllLines(file, StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			//First launch recording, nothing to go on yet
+		} catch (IOException e) {
+			MM.LOGGER.warn("Unable to read previous load order from " + file, e);
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			List<String> order;
+			synchronized (RECORDED) {
+				if (RECORDED.isEmpty()) return;
+				order = new ArrayList<>(RECORDED);
+			}
+
+			try {
+				Files.createDirectories(file.getParent());
+				Files.write(file, order, StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				MM.LOGGER.warn("Unable to save load order to " + file, e);
+			}
+		}, "MM Load Order Saver"));
+	}
+
+	/** Sorts the given classes into the order they were asked for last launch, with any which weren't asked for at the end */
+	static List<String> sort(Collection<String> names) {
+		List<String> out = new ArrayList<>(names);
+		if (previous.isEmpty()) return out;
+
+		Map<String, Integer> positions = new HashMap<>();
+		for (int i = 0; i < previous.size(); i++) {
+			positions.putIfAbsent(previous.get(i), i);
+		}
+
+		out.sort(Comparator.comparingInt(name -> positions.getOrDefault(name, Integer.MAX_VALUE)));
+		return out;
+	}
+
+	/**
+	 * Reads the bytes of each class asked for last launch (which is still going to be wanted) in the order they were asked for
+	 *
+	 * @param wanted Whether the given class is still going to be transformed (and isn't generated)
+	 */
+	static void prefetch(Predicate<String> wanted) {
+		if (previous.isEmpty()) return;
+
+		Thread thread = new Thread(() -> {
+			for (String name : previous) {
+				if (!wanted.test(name) || RECORDED.contains(name)) continue; //Either not needed or too late to be useful
+
+				try (InputStream in = LoadOrder.class.getResourceAsStream('/' + name + ".class")) {
+					if (in != null) HierarchyClassWriter.cacheHeader(name, ByteStreams.toByteArray(in));
+				} catch (IOException | RuntimeException e) {
+					//Doesn't matter, the class will be read normally when it's loaded
+				}
+			}
+		}, "MM Prefetch");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+}
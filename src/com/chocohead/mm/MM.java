@@ -18,5 +18,9 @@ public class MM implements ModInitializer {
 	@Override
 	public void onInitialize() {
 		LOGGER.info("Definitely not up to no good");
+		if (EnumExtender.PREPARE_SUBCLASSES) EnumExtender.discardPreparedSubclasses();
+		Profiler.heap("onInitialize"); //By now the transformations for everything loaded so far have been let go of
+		Profiler.report(LOGGER);
+		GeneratedClasses.report(LOGGER);
 	}
 }
\ No newline at end of file
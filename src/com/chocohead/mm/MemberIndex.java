@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * An index of a class's methods by name and description, along with the numbering of its anonymous inner classes, which
+ * is built when first needed and shared between all of MM's transformations of the class.
+ *
+ * <p>Other transformations are free to change the class between MM's, so anything found is checked against the class
+ * before it is returned and the index rebuilt if it's out of date. Methods being added or removed (or the list being
+ * replaced) are noticed from the list itself, but a method being renamed in place isn't.
+ */
+final class MemberIndex {
+	/** The index for the class currently being transformed on each thread, as transformations only ever see the {@link ClassNode} */
+	private static final ThreadLocal<MemberIndex> CURRENT = new ThreadLocal<>();
+	private final ClassNode node;
+	private List<MethodNode> indexedMethods;
+	private int indexedSize;
+	private final Map<String, Integer> methods = new HashMap<>();
+
+	private MemberIndex(ClassNode node) {
+		this.node = node;
+	}
+
+	static MemberIndex of(ClassNode node) {
+		MemberIndex index = CURRENT.get();
+
+		if (index == null || index.node != node) {
+			CURRENT.set(index = new MemberIndex(node));
+		}
+
+		return index;
+	}
+
+	/** Lets go of the index for the given class, once it has been finished with */
+	static void release(ClassNode node) {
+		MemberIndex index = CURRENT.get();
+		if (index != null && index.node == node) CURRENT.remove();
+	}
+
+	private void index() {
+		methods.clear();
+
+		List<MethodNode> nodeMethods = node.methods;
+		for (int i = 0, end = nodeMethods.size(); i < end; i++) {
+			MethodNode method = nodeMethods.get(i);
+			methods.putIfAbsent(method.name + method.desc, i);
+		}
+
+		indexedMethods = nodeMethods;
+		indexedSize = nodeMethods.size();
+	}
+
+	MethodNode getMethod(String name, String desc) {
+		return getMethod(name + desc);
+	}
+
+	MethodNode getMethod(String nameAndDesc) {
+		if (indexedMethods != node.methods || indexedSize != node.methods.size()) index();
+
+		Integer position = methods.get(nameAndDesc);
+		if (position == null) return null; //Nothing has been added or removed since indexing, so it's not there
+
+		MethodNode method = node.methods.get(position);
+		if (matches(method, nameAndDesc)) return method;
+
+		index(); //Evidently something has moved, so probably other things have too
+		position = methods.get(nameAndDesc);
+		return position != null ? node.methods.get(position) : null;
+	}
+
+	private static boolean matches(MethodNode method, String nameAndDesc) {
+		return nameAndDesc.length() == method.name.length() + method.desc.length() && nameAndDesc.startsWith(method.name) && nameAndDesc.endsWith(method.desc);
+	}
+
+	/** Adds the given method to the class, keeping track of where it is */
+	void addMethod(MethodNode method) {
+		node.methods.add(method);
+
+		if (indexedMethods == node.methods && indexedSize == node.methods.size() - 1) {
+			methods.putIfAbsent(method.name + method.desc, indexedSize++);
+		}
+	}
+
+	/** The number of the last anonymous inner class the class has, or {@code 0} if there are none */
+	int getLastAnonymousClass() {
+		String leadIn = node.name + '$';
+		int last = 0;
+
+		if (!node.innerClasses.isEmpty()) {
+			//Every nested class a class has (or uses) is listed in its inner classes
+			for (InnerClassNode innerClass : node.innerClasses) {
+				last = Math.max(last, anonymousNumber(leadIn, innerClass.name));
+			}
+		} else {
+			//Unless they've been stripped out, in which case the anonymous classes will still have to be made somewhere
+			for (MethodNode method : node.methods) {
+				for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+					if (insn.getType() == AbstractInsnNode.METHOD_INSN) {
+						last = Math.max(last, anonymousNumber(leadIn, ((MethodInsnNode) insn).owner));
+					}
+				}
+			}
+		}
+
+		return last;
+	}
+
+	private static int anonymousNumber(String leadIn, String name) {
+		if (!name.startsWith(leadIn) || name.length() == leadIn.length()) return 0;
+
+		for (int i = leadIn.length(); i < name.length(); i++) {
+			char c = name.charAt(i);
+			if ('0' > c || c > '9') return 0;
+		}
+
+		return Integer.parseInt(name.substring(leadIn.length()));
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Applies every mod's access transformers to the game jar ahead of time, writing the changed classes to an overlay jar
+ * which can be put in front of the game jar on the classpath. When MM finds an overlay made for the same access
+ * transformers it will skip running them on the classes the overlay provides.
+ *
+ * <p>Only access transformers (and the overrides they need widening) can be done like this: enum additions need their
+ * parameters from the running game, and early risers need a loaded game to run in. Any other transformations of the
+ * overlay's classes are still run when they load.
+ */
+public final class Overlay {
+	/** The file in the overlay jar listing the access transformers it was made for, followed by every class it has */
+	static final String MANIFEST = "mm-overlay.txt";
+
+	private Overlay() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: <game jar> <mods directory> <output overlay jar>");
+			System.exit(1);
+		}
+		Path game = Paths.get(args[0]);
+		Path modsDir = Paths.get(args[1]);
+		Path output = Paths.get(args[2]);
+
+		List<Path> mods = new ArrayList<>();
+		try (DirectoryStream<Path> jars = Files.newDirectoryStream(modsDir, "*.jar")) {
+			jars.forEach(mods::add);
+		}
+
+		Map<String, Set<String>> transforms = new HashMap<>();
+		for (Path mod : mods) {
+			try (ZipFile zip = new ZipFile(mod.toFile())) {
+				if (zip.getEntry("silky.at") == null) continue;
+			}
+
+			Plugin.mergeATs(transforms, Plugin.readAT(new URL("jar:" + mod.toUri() + "!/silky.at")));
+		}
+		if (transforms.isEmpty()) {
+			System.out.println("No access transformers found in " + modsDir + ", nothing to do");
+			return;
+		}
+
+		Map<String, List<Consumer<ClassNode>>> changes = new HashMap<>();
+		for (Entry<String, Set<String>> entry : transforms.entrySet()) {
+			changes.computeIfAbsent(entry.getKey().replace('.', '/'), k -> new ArrayList<>()).add(Plugin.makeAT(entry.getValue(), false));
+		}
+
+		Map<String, Set<String>> widenedMethods = Plugin.findWidenedMethods(transforms);
+		if (!widenedMethods.isEmpty()) {
+			List<FileSystem> systems = new ArrayList<>();
+			try {
+				List<Path> roots = new ArrayList<>();
+				List<Path> jars = new ArrayList<>(mods);
+				jars.add(0, game);
+
+				for (Path jar : jars) {
+					FileSystem system = FileSystems.newFileSystem(URI.create("jar:" + jar.toUri()), Collections.emptyMap());
+					systems.add(system);
+					roots.add(system.getPath("/"));
+				}
+
+				HierarchyIndex index = HierarchyIndex.build(roots, Paths.get(".fabric/mm/hierarchy"));
+				for (Entry<String, Set<String>> entry : index.findNarrowOverrides(widenedMethods).entrySet()) {
+					changes.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(Plugin.makeOverrideWidener(entry.getValue()));
+				}
+			} finally {
+				for (FileSystem system : systems) system.close();
+			}
+		}
+
+		Map<String, byte[]> classes;
+		try (ZipFile zip = new ZipFile(game.toFile())) {
+			//Each class is independent, so they might as well be done at the same time
+			classes = changes.entrySet().parallelStream().map(entry -> {
+				ZipEntry classEntry = zip.getEntry(entry.getKey() + ".class");
+				if (classEntry == null) return null; //Probably a mod class, which the overlay can't replace
+
+				ClassNode node = new ClassNode();
+				try (InputStream in = zip.getInputStream(classEntry)) {
+					new ClassReader(in).accept(node, 0);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Error reading " + entry.getKey(), e);
+				}
+
+				for (Consumer<ClassNode> change : entry.getValue()) {
+					change.accept(node);
+				}
+
+				ClassWriter writer = new ClassWriter(0); //Only the access is changing, so the existing frames are still fine
+				node.accept(writer);
+				return new SimpleEntry(entry.getKey(), writer.toByteArray());
+			}).filter(entry -> entry != null).collect(Collectors.toMap(entry -> entry.name, entry -> entry.bytecode));
+		}
+
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(output))) {
+			out.putNextEntry(new ZipEntry(MANIFEST));
+			StringBuilder manifest = new StringBuilder(fingerprint(transforms)).append('\n');
+			for (String name : new TreeSet<>(classes.keySet())) manifest.append(name).append('\n');
+			out.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+
+			for (Entry<String, byte[]> entry : new TreeMap<>(classes).entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+
+		System.out.println("Wrote " + classes.size() + " access transformed classes to " + output);
+	}
+
+	private static final class SimpleEntry {
+		final String name;
+		final byte[] bytecode;
+
+		SimpleEntry(String name, byte[] bytecode) {
+			this.name = name;
+			this.bytecode = bytecode;
+		}
+	}
+
+	/** A hash of the given access transformers which doesn't depend on the order they were read in */
+	static String fingerprint(Map<String, Set<String>> transforms) {
+		SortedMap<String, SortedSet<String>> sorted = new TreeMap<>();
+		for (Entry<String, Set<String>> entry : transforms.entrySet()) {
+			sorted.computeIfAbsent(entry.getKey().replace('.', '/'), k -> new TreeSet<>()).addAll(entry.getValue());
+		}
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		for (Entry<String, SortedSet<String>> entry : sorted.entrySet()) {
+			for (String method : entry.getValue()) {
+				hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putChar(' ').putString(method, StandardCharsets.UTF_8).putChar('\n');
+			}
+		}
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Finds the classes which an overlay jar on the classpath has already transformed with the given access transformers
+	 *
+	 * @param transforms The access transformers about to be applied
+	 *
+	 * @return The internal names of the classes which are already transformed
+	 */
+	static Set<String> findOverlaid(Map<String, Set<String>> transforms) {
+		ClassLoader loader = Overlay.class.getClassLoader();
+		Set<String> out = new HashSet<>();
+
+		try {
+			String fingerprint = null;
+
+			for (Enumeration<URL> urls = loader.getResources(MANIFEST); urls.hasMoreElements();) {
+				URL url = urls.nextElement();
+				String jar = url.toString();
+				jar = jar.substring(0, jar.length() - MANIFEST.length());
+
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					if (fingerprint == null) fingerprint = fingerprint(transforms);
+
+					if (!fingerprint.equals(reader.readLine())) {
+						//The classes will still come from the overlay, so anything it did that isn't wanted any more can't be undone
+						MM.LOGGER.warn("Overlay at " + jar + " was made for different access transformers, it should be rebuilt");
+						continue;
+					}
+
+					String name;
+					while ((name = reader.readLine()) != null) {
+						if (name.isEmpty()) continue;
+
+						//Only trust the overlay for classes which it is actually providing
+						URL type = loader.getResource(name + ".class");
+						if (type != null && type.toString().startsWith(jar)) out.add(name);
+					}
+				}
+			}
+		} catch (IOException e) {
+			MM.LOGGER.warn("Error reading overlay, will transform everything normally", e);
+			return Collections.emptySet();
+		}
+
+		return out;
+	}
+}
@@ -8,25 +8,32 @@
 package com.chocohead.mm;
 
 import java.io.IOException;
+import java.lang.instrument.Instrumentation;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Maps;
@@ -58,9 +65,49 @@ import com.chocohead.mm.api.EnumAdder;
 import com.chocohead.mm.api.EnumAdder.EnumAddition;
 
 public final class Plugin implements IMixinConfigPlugin {
+	/** Stands in for the transformations of a class once it has been defined, as they can never be run again */
+	private static final Set<Consumer<ClassNode>> RETIRED = new AbstractSet<Consumer<ClassNode>>() {
+		@Override
+		public boolean add(Consumer<ClassNode> transformer) {
+			return false; //Too late to transform the class now
+		}
+
+		@Override
+		public Iterator<Consumer<ClassNode>> iterator() {
+			return Collections.emptyIterator();
+		}
+
+		@Override
+		public int size() {
+			return 0;
+		}
+	};
+	/** Stands in for the replacement of a class once it has been defined, so another can't be registered in its place */
+	static final Consumer<ClassNode> RETIRED_REPLACER = new Consumer<ClassNode>() {
+		@Override
+		public void accept(ClassNode node) {
+			MM.LOGGER.warn("Tried to replace " + node.name + " again after it has already been defined, skipping the replacement");
+		}
+
+		@Override
+		public String toString() {
+			return "already applied replacement";
+		}
+	};
 	final List<String> mixins = new ArrayList<>();
-	final Map<String, String> enumStructParents = new HashMap<>();
+	final Map<String, String> enumStructs = new HashMap<>();
+	private final Set<String> extendedEnums = ConcurrentHashMap.newKeySet();
 	private Map<String, Set<Consumer<ClassNode>>> classModifiers;
+	private Map<String, Consumer<ClassNode>> classReplacers;
+	private Set<EnumAdder> enumExtenders;
+	private boolean retireApplied = true;
+	private WarmUp warmUp = WarmUp.ENABLED ? new WarmUp() : null;
+	private Set<String> otherTargets = Collections.emptySet();
+	/** Whether to hold off making Mixins for targets registered after onLoad, so they can all share one instead of each having their own */
+	private boolean batchMixins = false;
+	private final Set<String> pendingMixins = new HashSet<>();
+	/** The overrides of methods which access transformers widen, found in the background from onLoad until getMixins */
+	private FutureTask<Map<String, Set<String>>> overrides;
 
 	private static Consumer<URL> fishAddURL() {
 		ClassLoader loader = Plugin.class.getClassLoader();
@@ -91,8 +138,10 @@ public final class Plugin implements IMixinConfigPlugin {
 
 	@Override
 	public void onLoad(String rawMixinPackage) {
+		long time = Profiler.time(), allocated = Profiler.allocated();
 		String mixinPackage = rawMixinPackage.replace('.', '/');
 
+		Map<URL, Map<String, Set<String>>> fileTransforms = new LinkedHashMap<>();
 		Map<String, Set<String>> transforms = new HashMap<>();
 		try {
 			Enumeration<URL> urls = MM.class.getClassLoader().getResources("silky.at");
@@ -100,27 +149,9 @@ public final class Plugin implements IMixinConfigPlugin {
 				URL url = urls.nextElement();
 				//System.out.println("Found AT: " + url);
 
-				try (Scanner scanner = new Scanner(url.openStream())) {
-					//System.out.println("Made scanner");
-					while (scanner.hasNextLine()) {
-						String line = scanner.nextLine().trim();
-						//System.out.println("On line: \"" + line + '\"');
-						if (line.isEmpty() || line.startsWith("#")) continue;
-
-						int split = line.indexOf(' ');
-						String className, method;
-						if (split > 0) {
-							className = line.substring(0, split++);
-							method = line.substring(split);
-						} else {
-							className = line;
-							method = "<*>";
-						}
-
-						transforms.computeIfAbsent(className, k -> new HashSet<>()).add(method);
-					}
-					//System.out.println("Finished with scanner");
-				}
+				Map<String, Set<String>> fileTransform = readAT(url);
+				fileTransforms.put(url, fileTransform);
+				mergeATs(transforms, fileTransform);
 			}
 		} catch (IOException e) {
 			throw new RuntimeException("Error loading access transformers", e);
@@ -132,13 +163,51 @@ public final class Plugin implements IMixinConfigPlugin {
 		transforms.computeIfAbsent("net.minecraft.entity.passive.SheepEntity", k -> new HashSet<>()).add("<*>");
 		transforms.computeIfAbsent("net.minecraft.client.gui.ingame.CreativePlayerInventoryScreen$CreativeSlot", k -> new HashSet<>()).add("<*>");*/
 
+		Instrumentation instrumentation = FabricLoader.getInstance().isDevelopmentEnvironment() ? Agent.getInstrumentation() : null;
+		//Running with MM as an agent, so changes to the access transformers can be applied as they're made
+		boolean reloadATs = instrumentation != null && ATReloader.canWatch(fileTransforms.keySet());
+		if (reloadATs) {
+			retireApplied = false; //Redefining classes will need their transformations again
+			warmUp = null; //The access transformers could change between warming up and being used
+		}
+
+		//Classes which have been access transformed ahead of time don't need doing again, anything else still does
+		Set<String> overlaid = Overlay.findOverlaid(transforms);
+
 		for (Entry<String, Set<String>> entry : transforms.entrySet()) {
 			//System.out.println("Adding transformation " + entry.getKey() + " => " + entry.getValue());
-			ClassTinkerers.addTransformation(entry.getKey(), makeAT(entry.getValue()));
+			String target = entry.getKey().replace('.', '/');
+			if (overlaid.contains(target)) continue;
+
+			Consumer<ClassNode> transformer = makeAT(entry.getValue(), reloadATs);
+			Consumer<ClassNode> profiled = Profiler.profile("Access transformer", transformer);
+			ClassTinkerers.addTransformation(target, profiled);
+			if (warmUp != null) warmUp.add(target, profiled, transformer);
+		}
+
+		Map<String, Set<String>> widenedMethods = findWidenedMethods(transforms);
+		if (!widenedMethods.isEmpty()) {
+			//Anything overriding a method which is now public has to be public too, otherwise it will crash when loaded
+			FabricLoader loader = FabricLoader.getInstance();
+			List<Path> roots = loader.getAllMods().stream().map(ModContainer::getRootPath).collect(Collectors.toList());
+			Path cache = loader.getGameDirectory().toPath().resolve(".fabric/mm/hierarchy");
+
+			//Reading every class of every mod takes a while without a cache, which can happen whilst Mixin carries on loading
+			overrides = new FutureTask<>(() -> {
+				long indexTime = Profiler.time(), indexAllocated = Profiler.allocated();
+				Map<String, Set<String>> narrowOverrides = HierarchyIndex.build(roots, cache).findNarrowOverrides(widenedMethods);
+				narrowOverrides.keySet().removeAll(overlaid);
+				Profiler.record("Hierarchy index", indexTime, indexAllocated);
+				return narrowOverrides;
+			});
+			Thread thread = new Thread(overrides, "MM Hierarchy Index");
+			thread.setDaemon(true);
+			thread.start();
 		}
 
 		Map<String, byte[]> classGenerators = new HashMap<>();
-		Map<String, Set<Consumer<ClassNode>>> classModifiers = new HashMap<String, Set<Consumer<ClassNode>>>() {
+		//Classes are retired from whichever thread loads them, so these need to cope with being changed concurrently
+		Map<String, Set<Consumer<ClassNode>>> classModifiers = new ConcurrentHashMap<String, Set<Consumer<ClassNode>>>() {
 			private static final long serialVersionUID = 4152702952480161028L;
 			private boolean skipGen = false;
 			private int massPool = 1;
@@ -153,7 +222,13 @@ public final class Plugin implements IMixinConfigPlugin {
 
 			@Override
 			public Set<Consumer<ClassNode>> put(String key, Set<Consumer<ClassNode>> value) {
-				if (!skipGen) generate(key, Collections.singleton(key));
+				if (!skipGen) {
+					if (batchMixins) {
+						pendingMixins.add(key);
+					} else {
+						generate(key, Collections.singleton(key));
+					}
+				}
 				return super.put(key, value);
 			}
 
@@ -165,7 +240,7 @@ public final class Plugin implements IMixinConfigPlugin {
 				skipGen = false;
 			}
 		};
-		Map<String, Consumer<ClassNode>> classReplacers = new HashMap<String, Consumer<ClassNode>>() {
+		Map<String, Consumer<ClassNode>> classReplacers = new ConcurrentHashMap<String, Consumer<ClassNode>>() {
 			private static final long serialVersionUID = -1226882557534215762L;
 			private boolean skipGen = false;
 
@@ -189,30 +264,26 @@ public final class Plugin implements IMixinConfigPlugin {
 			private boolean skipCheck = false;
 
 			private void addTransformations(EnumAdder builder) {
-				ClassTinkerers.addTransformation(builder.type, EnumExtender.makeEnumExtender(builder));
+				ClassTinkerers.addTransformation(builder.type, Profiler.profile("Enum extender", EnumExtender.makeEnumExtender(builder)));
+				extendedEnums.add(builder.type);
 
 				for (EnumAddition addition : builder.getAdditions()) {
 					if (addition.isEnumSubclass()) {
-						ClassTinkerers.addReplacement(addition.structClass, EnumSubclasser.makeStructFixer(addition, builder.type));
-
-						for (StructClass node : EnumSubclasser.getParentStructs(addition.structClass)) {
-							String lastEnum = enumStructParents.put(node.name, builder.type);
-							assert lastEnum == null || lastEnum.equals(builder.type);
-						}
+						//Structs are only looked at once all the additions are in, see getMixins
+						String lastEnum = enumStructs.put(addition.structClass, builder.type);
+						assert lastEnum == null || lastEnum.equals(builder.type);
 					}
 				}
-
-				enumStructParents.keySet().removeAll(classReplacers.keySet());
 			}
 
 			@Override
-			public boolean add(EnumAdder builder) {
+			public synchronized boolean add(EnumAdder builder) {//Late builds can happen whilst classes are being retired
 				if (!skipCheck) addTransformations(builder);
 				return super.add(builder);
 			}
 
 			@Override
-			public boolean addAll(Collection<? extends EnumAdder> builders) {
+			public synchronized boolean addAll(Collection<? extends EnumAdder> builders) {
 				skipCheck = true;
 				for (EnumAdder builder : builders) addTransformations(builder);
 				boolean out = super.addAll(builders);
@@ -220,25 +291,13 @@ public final class Plugin implements IMixinConfigPlugin {
 				return out;
 			}
 
-			@Override
-			public boolean remove(Object o) {
-				throw new UnsupportedOperationException();
-			}
-
-			@Override
-			public boolean removeIf(Predicate<? super EnumAdder> filter) {
-				throw new UnsupportedOperationException();
-			}
-
-			@Override
-			public boolean removeAll(Collection<?> c) {
-				throw new UnsupportedOperationException();
-			}
 		};
-		ClassTinkerers.INSTANCE.hookUp(fishAddURL(), new UnremovableMap<>(classGenerators), new UnremovableMap<>(classReplacers), new UnremovableMap<>(classModifiers), enumExtenders);
+		ClassTinkerers.INSTANCE.hookUp(fishAddURL(), new UnremovableMap<>(classGenerators), new UnremovableMap<>(classReplacers), new UnremovableMap<>(classModifiers), new UnremovableSet<>(enumExtenders));
 
 		ClassTinkerers.addURL(CasualStreamHandler.create(classGenerators));
 		this.classModifiers = classModifiers;
+		this.classReplacers = classReplacers;
+		this.enumExtenders = enumExtenders;
 
 		//System.out.println("Loaded initially with: " + classModifiers);
 
@@ -270,6 +329,63 @@ public final class Plugin implements IMixinConfigPlugin {
 			new ClassReader(bytes).accept(node, ClassReader.EXPAND_FRAMES);
 			exporter.export(MixinEnvironment.getCurrentEnvironment(), name, false, node);
 		};
+
+		if (LoadOrder.ENABLED) LoadOrder.start(FabricLoader.getInstance().getGameDirectory().toPath().resolve(".fabric/mm/load-order.txt"));
+
+		if (reloadATs) ATReloader.start(instrumentation, transformer, fileTransforms, transforms);
+
+		batchMixins = GeneratedClasses.LEAN; //Only targets registered from here on are held back, onLoad's own are made as they always were
+		Profiler.record("Plugin#onLoad", time, allocated);
+		Profiler.scale("access transformed classes", transforms.size());
+		Profiler.heap("onLoad");
+	}
+
+	static Map<String, Set<String>> readAT(URL url) throws IOException {
+		Map<String, Set<String>> transforms = new HashMap<>();
+
+		try (Scanner scanner = new Scanner(url.openStream())) {
+			//System.out.println("Made scanner");
+			while (scanner.hasNextLine()) {
+				String line = scanner.nextLine().trim();
+				//System.out.println("On line: \"" + line + '\"');
+				if (line.isEmpty() || line.startsWith("#")) continue;
+
+				int split = line.indexOf(' ');
+				String className, method;
+				if (split > 0) {
+					className = line.substring(0, split++);
+					method = line.substring(split);
+				} else {
+					className = line;
+					method = "<*>";
+				}
+
+				transforms.computeIfAbsent(className, k -> new HashSet<>()).add(method);
+			}
+			//System.out.println("Finished with scanner");
+		}
+
+		return transforms;
+	}
+
+	static void mergeATs(Map<String, Set<String>> into, Map<String, Set<String>> from) {
+		for (Entry<String, Set<String>> entry : from.entrySet()) {
+			into.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+		}
+	}
+
+	static Map<String, Set<String>> findWidenedMethods(Map<String, Set<String>> transforms) {
+		Map<String, Set<String>> widenedMethods = new HashMap<>();
+
+		for (Entry<String, Set<String>> entry : transforms.entrySet()) {
+			Set<String> methods = entry.getValue().stream().filter(method -> method.charAt(0) != '<').collect(Collectors.toSet());
+			if (!methods.isEmpty()) widenedMethods.merge(entry.getKey().replace('.', '/'), methods, (a, b) -> {
+				a.addAll(b);
+				return a;
+			});
+		}
+
+		return widenedMethods;
 	}
 
 	static byte[] makeMixinBlob(String name, Collection<? extends String> targets) {
@@ -283,33 +399,58 @@ public final class Plugin implements IMixinConfigPlugin {
 		mixinAnnotation.visitEnd();
 
 		cw.visitEnd();
-		return cw.toByteArray();
+		return GeneratedClasses.generatedMixin(cw.toByteArray());
 	}
 
-	private static Consumer<ClassNode> makeAT(Set<String> transforms) {
-		return node -> {
-			//System.out.println("ATing " + node.name + " with " + transforms);
-			if (transforms.remove("<*>")) {
-				node.access = flipBits(node.access);
-
-				for (InnerClassNode innerClass : node.innerClasses) {
-					if (node.name.equals(innerClass.name)) {
-						innerClass.access = flipBits(innerClass.access);
-						break;
-					}
+	static Consumer<ClassNode> makeAT(Set<String> transforms, boolean reloadable) {
+		if (reloadable) {
+			return node -> {
+				//System.out.println("ATing " + node.name + " with " + transforms);
+				synchronized (transforms) {//Only changes when reloading in development, so has to keep the class wide marker for next time
+					applyAT(node, transforms.contains("<*>"), transforms);
+				}
+			};
+		} else {
+			//Left in the set (which applyAT skips over) as the overlay's fingerprint is made from it
+			boolean wholeClass = transforms.contains("<*>");
+			return node -> applyAT(node, wholeClass, transforms);
+		}
+	}
+
+	private static void applyAT(ClassNode node, boolean wholeClass, Set<String> transforms) {
+		if (wholeClass) {
+			node.access = flipBits(node.access);
+
+			for (InnerClassNode innerClass : node.innerClasses) {
+				if (node.name.equals(innerClass.name)) {
+					innerClass.access = flipBits(innerClass.access);
+					break;
+				}
+			}
+		}
+
+		if (transforms.size() > (transforms.contains("<*>") ? 1 : 0)) {
+			MemberIndex index = MemberIndex.of(node);
+			Set<String> wasPrivate = null;
+
+			for (String transform : transforms) {
+				MethodNode method = index.getMethod(transform);
+				if (method == null) continue; //Either the whole class or a method which doesn't exist
+
+				if ((method.access & Opcodes.ACC_PRIVATE) != 0 && !"<init>".equals(method.name)) {
+					if (wasPrivate == null) wasPrivate = new HashSet<>();
+					wasPrivate.add(transform);
 				}
+				method.access = flipBits(method.access);
 			}
 
-			if (!transforms.isEmpty()) {
+			if (wasPrivate != null) {//Only private methods are called with INVOKESPECIAL, so there's nothing else to fix otherwise
 				for (MethodNode method : node.methods) {
-					if (transforms.contains(method.name + method.desc)) {
-						method.access = flipBits(method.access);
-					}
 					for (AbstractInsnNode insnNode : method.instructions) {
 						if (insnNode.getOpcode() == Opcodes.INVOKESPECIAL) {
 							MethodInsnNode methodInsnNode = (MethodInsnNode) insnNode;
 
-							if (!methodInsnNode.name.equals("<init>") && methodInsnNode.owner.equals(node.name) && transforms.contains(methodInsnNode.name + methodInsnNode.desc)) {
+							if (methodInsnNode.owner.equals(node.name) && wasPrivate.contains(methodInsnNode.name + methodInsnNode.desc)) {
 								// Private methods are normally invoked with INVOKESPECIAL
 								// We want to make sure that any private -> public methods are invoked with INVOKEVIRTUAL, so that the JVM correctly handles potential inheritance
 								methodInsnNode.setOpcode(Opcodes.INVOKEVIRTUAL);
@@ -318,6 +459,17 @@ public final class Plugin implements IMixinConfigPlugin {
 					}
 				}
 			}
+		}
+	}
+
+	static Consumer<ClassNode> makeOverrideWidener(Set<String> overrides) {
+		return node -> {
+			MemberIndex index = MemberIndex.of(node);
+
+			for (String override : overrides) {
+				MethodNode method = index.getMethod(override);
+				if (method != null) method.access = (method.access & ACCESSES) | Opcodes.ACC_PUBLIC;
+			}
 		};
 	}
 
@@ -336,7 +488,9 @@ public final class Plugin implements IMixinConfigPlugin {
 
 	@Override
 	public List<String> getMixins() {
+		long time = Profiler.time(), allocated = Profiler.allocated();
 		//System.out.println("Have " + mixins);
+		if (overrides != null) widenOverrides(); //Before any early risers in case they load something which needs widening
 		FabricLoader.getInstance().getEntrypoints("mm:early_risers", Runnable.class).forEach(Runnable::run);
 		for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
 			if (mod.getMetadata().containsCustomValue("mm:early_risers")) {
@@ -351,16 +505,94 @@ public final class Plugin implements IMixinConfigPlugin {
 			}
 		}
 		//System.out.println("Now have " + mixins);
-		if (!enumStructParents.isEmpty()) {
-			for (Entry<String, String> entry : enumStructParents.entrySet()) {
+		if (!enumStructs.isEmpty()) {
+			Map<String, String> structFixers = new HashMap<>();
+
+			for (Entry<String, String> entry : enumStructs.entrySet()) {
+				String struct = entry.getKey();
+				String target = entry.getValue();
+
+				//Inlined structs are never loaded so don't need fixing
+				if (EnumSubclasser.isInlineStruct(struct)) continue;
+				structFixers.put(struct, target);
+
+				//Struct parents need fixing too, but the Mixin needs to know about them now even if the enum is never loaded
+				for (StructClass node : EnumSubclasser.getParentStructs(struct)) {
+					String lastEnum = structFixers.put(node.name, target);
+					assert lastEnum == null || lastEnum.equals(target);
+				}
+			}
+
+			structFixers.keySet().removeAll(classReplacers.keySet());
+			for (Entry<String, String> entry : structFixers.entrySet()) {
 				ClassTinkerers.addReplacement(entry.getKey(), EnumSubclasser.makeStructFixer(entry.getKey(), entry.getValue()));
 			}
+
+			//Get the subclasses ready in the background, rather than when the game first touches the enum
+			if (EnumExtender.PREPARE_SUBCLASSES) EnumExtender.prepareSubclasses(enumExtenders);
+		}
+
+		batchMixins = false;
+		if (!pendingMixins.isEmpty()) {
+			//Everything registered since onLoad gets a single Mixin between them
+			classModifiers.putAll(Maps.asMap(pendingMixins, classModifiers::get));
+			pendingMixins.clear();
+		}
+
+		if (warmUp != null) {
+			//Other Mixins (or replacements) could apply first, so there's little point guessing what the class will look like
+			Set<String> skip = new HashSet<>(classReplacers.keySet());
+			for (String target : otherTargets) skip.add(target.replace('.', '/'));
+			warmUp.start(skip);
+		}
+
+		if (LoadOrder.ENABLED) {
+			//Only classes which come from a mod or the game, the generated ones are already in memory
+			Map<String, Set<Consumer<ClassNode>>> classModifiers = this.classModifiers;
+			LoadOrder.prefetch(name -> {
+				Set<Consumer<ClassNode>> transformations = classModifiers.get(name);
+				return transformations != null && transformations != RETIRED;
+			});
+		}
+
+		Profiler.record("Plugin#getMixins", time, allocated);
+		if (Profiler.ENABLED) {
+			Profiler.scale("mods", FabricLoader.getInstance().getAllMods().size());
+			Profiler.scale("enum extensions", enumExtenders.size());
+			Profiler.scale("enum structs", enumStructs.size());
+			Profiler.scale("class replacements", classReplacers.size());
+			Profiler.scale("transformed classes", classModifiers.size());
+			Profiler.scale("generated Mixins", mixins.size());
+			Profiler.heap("getMixins");
 		}
 		return mixins;
 	}
 
+	private void widenOverrides() {
+		long time = Profiler.time(), allocated = Profiler.allocated();
+		Map<String, Set<String>> narrowOverrides;
+		try {
+			narrowOverrides = overrides.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error indexing class hierarchy", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for class hierarchy", e);
+		}
+		overrides = null;
+		Profiler.record("Hierarchy index (waiting)", time, allocated);
+
+		for (Entry<String, Set<String>> entry : narrowOverrides.entrySet()) {
+			Consumer<ClassNode> transformer = makeOverrideWidener(entry.getValue());
+			Consumer<ClassNode> profiled = Profiler.profile("Override widener", transformer);
+			ClassTinkerers.addTransformation(entry.getKey(), profiled);
+			if (warmUp != null) warmUp.add(entry.getKey(), profiled, transformer);
+		}
+	}
+
 	@Override
 	public void acceptTargets(Set<String> myTargets, Set<String> otherTargets) {
+		this.otherTargets = otherTargets;
 	}
 
 	@Override
@@ -371,17 +603,70 @@ public final class Plugin implements IMixinConfigPlugin {
 	@Override
 	public void preApply(String targetClassName, ClassNode targetClass, String mixinClassName, IMixinInfo mixinInfo) {
 		//System.out.println("Pre-applying " + targetClassName + " via " + mixinClassName);
+		long time = Profiler.time(), allocated = Profiler.allocated();
+		if (LoadOrder.ENABLED) LoadOrder.record(targetClass.name);
+
+		Set<Consumer<ClassNode>> transformations = classModifiers.get(targetClass.name);
+		if (transformations == RETIRED) {
+			//Most likely the class is being defined again by another class loader, but what it was transformed with has been let go
+			MM.LOGGER.warn("Tried to transform " + targetClassName + " again after it has already been defined, skipping MM's transformations");
+		} else if (transformations != null) {
+			Set<Consumer<ClassNode>> done = warmUp != null ? warmUp.splice(targetClass.name, targetClass) : Collections.emptySet();
 
-		Set<Consumer<ClassNode>> transformations = classModifiers.get(targetClassName.replace('.', '/'));
-		if (transformations != null) {
 			for (Consumer<ClassNode> transformer : transformations) {
-				transformer.accept(targetClass);
+				if (!done.contains(transformer)) transformer.accept(targetClass);
 			}
 		}
+		Profiler.record("Plugin#preApply", time, allocated);
 	}
 
 	@Override
 	public void postApply(String targetClassName, ClassNode targetClass, String mixinClassName, IMixinInfo mixinInfo) {
-		targetClass.interfaces.remove(mixinClassName.replace('.', '/'));
+		List<String> interfaces = targetClass.interfaces;
+		for (int i = interfaces.size() - 1; i >= 0; i--) {//The Mixin will have been added last
+			if (isSameClass(interfaces.get(i), mixinClassName)) {
+				interfaces.remove(i);
+				break;
+			}
+		}
+		MemberIndex.release(targetClass);
+		if (Verification.ENABLED) {
+			Set<Consumer<ClassNode>> transformations = classModifiers.get(targetClass.name);
+			Consumer<ClassNode> replacer = classReplacers.get(targetClass.name);
+			Verification.expect(targetClass.name, transformations != null ? transformations : Collections.emptySet(), replacer != RETIRED_REPLACER ? replacer : null);
+		}
+		if (retireApplied) retire(targetClass.name);
+	}
+
+	/** Whether the given internal name is the same as the given class name, without making copies of either */
+	private static boolean isSameClass(String internalName, String className) {
+		if (internalName.length() != className.length()) return false;
+
+		for (int i = 0, end = internalName.length(); i < end; i++) {
+			char internal = internalName.charAt(i);
+			char normal = className.charAt(i);
+			if (internal != normal && (internal != '/' || normal != '.')) return false;
+		}
+
+		return true;
+	}
+
+	private void retire(String name) {
+		//The class is about to be defined so nothing registered for it will be used again, the keys stay to catch late registrations
+		Set<Consumer<ClassNode>> transformations = classModifiers.replace(name, RETIRED);
+		Consumer<ClassNode> replacer = classReplacers.replace(name, RETIRED_REPLACER);
+
+		if (extendedEnums.contains(name)) {
+			synchronized (enumExtenders) {//Only ClassTinkerers' view of the set is guarded against removal
+				enumExtenders.removeIf(builder -> name.equals(builder.type));
+			}
+
+			EnumSubclasser.enumDefined(name);
+		}
+
+		if (Profiler.ENABLED && transformations != null && transformations != RETIRED) {
+			Profiler.count("retired classes", 1);
+			Profiler.count("retired transformers", transformations.size() + (replacer != null && replacer != RETIRED_REPLACER ? 1 : 0));
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Opt-in (via {@code -Dmm.profile=true}) record of how long each of the transformation engines and loading phases take,
+ * and how much they allocate, so that regressions can be spotted from a normal game launch without needing to attach a
+ * profiler. The heap retained after each phase can also be measured with {@code -Dmm.profile.heap=true}.
+ */
+final class Profiler {
+	private static final class Section {
+		final LongAdder calls = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder bytes = new LongAdder();
+	}
+	static final boolean ENABLED = Boolean.getBoolean("mm.profile");
+	private static final com.sun.management.ThreadMXBean THREADS;
+	static {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if (ENABLED && threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			THREADS = (com.sun.management.ThreadMXBean) threads;
+			THREADS.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			THREADS = null; //Either not profiling or not able to track allocations
+		}
+	}
+	private static final Map<String, Section> SECTIONS = new ConcurrentSkipListMap<>();
+	/** Whether to measure the heap after each phase, which needs a full GC each time so is separately opt-in */
+	private static final boolean MEASURE_HEAP = ENABLED && Boolean.getBoolean("mm.profile.heap");
+	private static final Map<String, Long> HEAP = Collections.synchronizedMap(new LinkedHashMap<>());
+	private static final Map<String, Integer> SCALE = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	private Profiler() {
+	}
+
+	/** The time to pass to {@link #record(String, long, long)}, or {@code 0} if profiling is off */
+	static long time() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/** The allocations to pass to {@link #record(String, long, long)}, or {@code 0} if they're not being tracked */
+	static long allocated() {
+		return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	static void record(String section, long startTime, long startAllocated) {
+		if (!ENABLED) return;
+		long time = System.nanoTime() - startTime;
+		long allocated = allocated() - startAllocated;
+
+		Section stats = SECTIONS.computeIfAbsent(section, k -> new Section());
+		stats.calls.increment();
+		stats.nanos.add(time);
+		stats.bytes.add(allocated);
+	}
+
+	static <T> Consumer<T> profile(String section, Consumer<T> task) {
+		if (!ENABLED) return task;
+
+		Consumer<T> profiled = thing -> {
+			long time = time(), allocated = allocated();
+			task.accept(thing);
+			record(section, time, allocated);
+		};
+		Verification.wraps(profiled, task);
+		return profiled;
+	}
+
+	/** Notes how many of something there are, to put the timings into context */
+	static void scale(String thing, int amount) {
+		if (ENABLED) SCALE.put(thing, amount);
+	}
+
+	/** Adds to how many of something there have been so far */
+	static void count(String thing, int amount) {
+		if (ENABLED) SCALE.merge(thing, amount, Integer::sum);
+	}
+
+	/** Notes how much of the heap is still in use after the given phase has finished */
+	static void heap(String phase) {
+		if (!MEASURE_HEAP) return;
+
+		System.gc(); //Only want what's actually been kept
+		HEAP.put(phase, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+	}
+
+	static void report(Logger logger) {
+		if (!ENABLED) return;
+
+		synchronized (SCALE) {
+			if (!SCALE.isEmpty()) {
+				logger.info(SCALE.entrySet().stream().map(entry -> entry.getValue() + " " + entry.getKey()).collect(Collectors.joining(", ", "Profiled with ", "")));
+			}
+		}
+
+		for (Entry<String, Section> entry : SECTIONS.entrySet()) {
+			Section stats = entry.getValue();
+			long calls = stats.calls.sum();
+			long nanos = stats.nanos.sum();
+
+			if (THREADS != null) {
+				logger.info(String.format("%s: %d calls taking %.3fms (%.3fus each), allocating %d bytes (%d each)", entry.getKey(), calls,
+						nanos / 1_000_000D, nanos / 1_000D / calls, stats.bytes.sum(), stats.bytes.sum() / calls));
+			} else {
+				logger.info(String.format("%s: %d calls taking %.3fms (%.3fus each)", entry.getKey(), calls, nanos / 1_000_000D, nanos / 1_000D / calls));
+			}
+		}
+
+		synchronized (HEAP) {
+			for (Entry<String, Long> entry : HEAP.entrySet()) {
+				logger.info(String.format("Heap after %s: %.2fMB", entry.getKey(), entry.getValue() / 1048576D));
+			}
+		}
+	}
+}
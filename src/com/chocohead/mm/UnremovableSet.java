@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ForwardingSet;
+import com.google.common.collect.Iterators;
+
+public class UnremovableSet<E> extends ForwardingSet<E> {
+	private final Set<E> set;
+
+	public UnremovableSet(Set<E> set) {
+		this.set = set;
+	}
+
+	@Override
+	protected Set<E> delegate() {
+		return set;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return Iterators.unmodifiableIterator(set.iterator());
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> collection) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> collection) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+}
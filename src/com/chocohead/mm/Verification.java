@@ -0,0 +1,272 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+
+/**
+ * Opt-in (via {@code -Dmm.verify=true}) checking of the classes MM generates and transforms, which are snapshotted as
+ * they're loaded and verified in the background so loading isn't held up. Any problems found are logged along with the
+ * mods which registered the transformations, but otherwise the classes are loaded as normal.
+ */
+final class Verification {
+	static final boolean ENABLED = Boolean.getBoolean("mm.verify");
+	private static final ExecutorService EXECUTOR = ENABLED ? Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+			new ThreadFactoryBuilder().setNameFormat("MM Verifier %d").setDaemon(true).setPriority(Thread.MIN_PRIORITY).build()) : null;
+	/** The sources of the transformations which have been applied to classes which are yet to be snapshotted */
+	private static final Map<String, Set<String>> PENDING = new ConcurrentHashMap<>();
+	/** The classes which MM's own transformations were made for, rather than blaming MM itself for them */
+	private static final Map<Object, String> SOURCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private Verification() {
+	}
+
+	/** A verifier which looks up the hierarchy from the class files rather than loading the classes */
+	private static final class HierarchyVerifier extends SimpleVerifier {
+		private final Type currentClass;
+		private final Type currentSuperClass;
+		private final boolean isInterface;
+
+		HierarchyVerifier(ClassNode node) {
+			this(Type.getObjectType(node.name), node.superName != null ? Type.getObjectType(node.superName) : null, node.interfaces, (node.access & Opcodes.ACC_INTERFACE) != 0);
+		}
+
+		private HierarchyVerifier(Type currentClass, Type currentSuperClass, List<String> interfaces, boolean isInterface) {
+			super(Opcodes.ASM7, currentClass, currentSuperClass, interfaces.stream().map(Type::getObjectType).collect(Collectors.toList()), isInterface);
+
+			this.currentClass = currentClass;
+			this.currentSuperClass = currentSuperClass;
+			this.isInterface = isInterface;
+		}
+
+		@Override
+		protected boolean isInterface(Type type) {
+			if (currentClass.equals(type)) return isInterface;
+			if (type.getSort() != Type.OBJECT) return false;
+
+			HierarchyClassWriter.ClassHeader header = HierarchyClassWriter.findHeader(type.getInternalName());
+			return header != null && header.isInterface;
+		}
+
+		@Override
+		protected Type getSuperClass(Type type) {
+			if (currentClass.equals(type)) return currentSuperClass;
+			if (type.getSort() != Type.OBJECT) return Type.getObjectType("java/lang/Object");
+
+			HierarchyClassWriter.ClassHeader header = HierarchyClassWriter.findHeader(type.getInternalName());
+			return header != null && header.superName != null ? Type.getObjectType(header.superName) : null;
+		}
+
+		@Override
+		protected boolean isAssignableFrom(Type type, Type other) {
+			if (type.equals(other)) return true;
+			if (currentClass.equals(type) || currentClass.equals(other)) return super.isAssignableFrom(type, other);
+
+			if (type.getSort() == Type.ARRAY) {
+				if (other.getSort() != Type.ARRAY) return false;
+
+				Type element = type.getElementType();
+				Type otherElement = other.getElementType();
+				if (type.getDimensions() == other.getDimensions()) {
+					if (element.getSort() != Type.OBJECT || otherElement.getSort() != Type.OBJECT) return element.equals(otherElement);
+					return isAssignableFrom(element, otherElement);
+				}
+
+				return type.getDimensions() < other.getDimensions() && isArrayParent(element);
+			} else if (other.getSort() == Type.ARRAY) {
+				return isArrayParent(type);
+			}
+
+			//Like the JVM's verifier, anything goes for interfaces
+			if (isInterface(type)) return true;
+
+			Type last = other;
+			for (Type parent = other; parent != null; parent = getSuperClass(parent)) {
+				if (parent.equals(type)) return true;
+				last = parent;
+			}
+
+			//If the hierarchy couldn't be followed all the way up there's no telling
+			return !"java/lang/Object".equals(last.getInternalName());
+		}
+
+		private static boolean isArrayParent(Type type) {
+			switch (type.getInternalName()) {
+			case "java/lang/Object":
+			case "java/lang/Cloneable":
+			case "java/io/Serializable":
+				return true;
+
+			default:
+				return false;
+			}
+		}
+	}
+
+	/** Notes the given transformation was made on behalf of the given class, which any problems with it are blamed on */
+	static void attribute(Object transformation, String source) {
+		if (ENABLED) SOURCES.put(transformation, source);
+	}
+
+	/** Notes the given transformation only wraps another, so any problems with it are blamed on whatever the other is */
+	static void wraps(Object wrapper, Object wrapped) {
+		if (ENABLED) SOURCES.put(wrapper, sourceOf(wrapped));
+	}
+
+	private static String sourceOf(Object transformation) {
+		String source = SOURCES.get(transformation);
+		return source != null ? source : transformation.getClass().getName();
+	}
+
+	/** The names of the classes responsible for the given transformations */
+	static Set<String> sourcesOf(Collection<Consumer<ClassNode>> transformations, Consumer<ClassNode> replacer) {
+		Set<String> sources = new LinkedHashSet<>();
+
+		if (replacer != null) sources.add(sourceOf(replacer));
+		for (Consumer<ClassNode> transformation : transformations) {
+			sources.add(sourceOf(transformation));
+		}
+
+		return sources;
+	}
+
+	/** Notes the transformations which have been applied to the given class, ready for when it is snapshotted */
+	static void expect(String name, Collection<Consumer<ClassNode>> transformations, Consumer<ClassNode> replacer) {
+		PENDING.computeIfAbsent(name, k -> Collections.synchronizedSet(new LinkedHashSet<>())).addAll(sourcesOf(transformations, replacer));
+	}
+
+	/** Takes a copy of the given class if it's expected, to be verified once all the transformations have finished with it */
+	static void snapshot(ClassNode node) {
+		Set<String> sources = PENDING.remove(node.name);
+		if (sources == null) return;
+
+		byte[] bytecode;
+		try {
+			ClassWriter writer = new ClassWriter(0);
+			node.accept(new ClassVisitor(Opcodes.ASM7, writer) {
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+					return new MethodVisitor(Opcodes.ASM7, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+						@Override
+						public void visitFrame(int type, int localCount, Object[] local, int stackCount, Object[] stack) {
+							//Mixin will work out the frames (and maximums) when it writes the class, so there's no point checking them
+						}
+					};
+				}
+			});
+			bytecode = writer.toByteArray();
+		} catch (RuntimeException e) {
+			MM.LOGGER.warn("Unable to snapshot " + node.name + " to verify (transformed by " + blame(sources) + ')', e);
+			return;
+		}
+
+		EXECUTOR.execute(() -> verify(bytecode, true, sources));
+	}
+
+	/** Verifies the given generated class, which will be loaded exactly as it is, made on behalf of the given class */
+	static void generated(byte[] bytecode, String source) {
+		EXECUTOR.execute(() -> verify(bytecode, false, Collections.singleton(source)));
+	}
+
+	private static void verify(byte[] bytecode, boolean transformed, Set<String> sources) {
+		Map<String, String> failures;
+		try {
+			failures = check(bytecode, transformed);
+		} catch (RuntimeException e) {
+			MM.LOGGER.error("Unable to read snapshot to verify (" + describe(transformed, sources) + ')', e);
+			return;
+		}
+
+		for (Entry<String, String> failure : failures.entrySet()) {
+			MM.LOGGER.error("Verification of " + failure.getKey() + " (" + describe(transformed, sources) + ") failed: " + failure.getValue());
+		}
+	}
+
+	/** Verifies each method of the given class, returning why any failed by the class, name and descriptor of the method */
+	static Map<String, String> check(byte[] bytecode, boolean transformed) {
+		if (transformed) {
+			ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			new ClassReader(bytecode).accept(writer, ClassReader.SKIP_FRAMES);
+			bytecode = writer.toByteArray();
+		}
+		ClassNode node = new ClassNode();
+		new ClassReader(bytecode).accept(node, ClassReader.SKIP_FRAMES);
+
+		Map<String, String> failures = new LinkedHashMap<>();
+		Analyzer<BasicValue> analyzer = new Analyzer<>(new HierarchyVerifier(node));
+		for (MethodNode method : node.methods) {
+			try {
+				analyzer.analyze(node.name, method);
+			} catch (AnalyzerException | RuntimeException e) {
+				failures.put(node.name + '#' + method.name + method.desc, e.getMessage());
+			}
+		}
+
+		return failures;
+	}
+
+	private static String describe(boolean transformed, Set<String> sources) {
+		return (transformed ? "transformed by " : "generated by ") + blame(sources);
+	}
+
+	private static String blame(Set<String> sources) {
+		Set<String> mods = new LinkedHashSet<>();
+
+		synchronized (sources) {
+			for (String source : sources) {
+				mods.add(findMod(source));
+			}
+		}
+
+		return String.join(", ", mods);
+	}
+
+	private static String findMod(String name) {
+		int lambda = name.indexOf("$$Lambda");
+		if (lambda > 0) name = name.substring(0, lambda);
+
+		String file = name.replace('.', '/') + ".class";
+		for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+			if (Files.exists(mod.getRootPath().resolve(file))) return mod.getMetadata().getName();
+		}
+
+		return name; //Not from a mod, the class will have to do
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Opt-in (via {@code -Dmm.warmup=true}) speculative running of MM's own transformations in the background, so that
+ * when the game comes to load a transformed class only the result needs splicing in rather than the whole class being
+ * walked on the loading thread.
+ *
+ * <p>Only access transformers and override wideners are done this way, as they only ever change access flags and
+ * invoke opcodes, which makes their result a small set of changes which can each be checked against the class Mixin
+ * actually has before being applied. Mod transformations and replacements might have side effects, so always run as
+ * normal.
+ */
+final class WarmUp {
+	static final boolean ENABLED = Boolean.getBoolean("mm.warmup");
+
+	private static final class AccessChange {
+		final int index;
+		final String name, desc;
+		final int from, to;
+
+		AccessChange(int index, String name, String desc, int from, int to) {
+			this.index = index;
+			this.name = name;
+			this.desc = desc;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private static final class OpcodeChange {
+		final int method, insn;
+		final String name, desc;
+		final int from, to;
+
+		OpcodeChange(int method, int insn, String name, String desc, int from, int to) {
+			this.method = method;
+			this.insn = insn;
+			this.name = name;
+			this.desc = desc;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	static final class Prepared {
+		final int classFrom, classTo;
+		final int methodCount;
+		final List<AccessChange> innerClasses = new ArrayList<>();
+		final List<AccessChange> methods = new ArrayList<>();
+		final List<OpcodeChange> opcodes = new ArrayList<>();
+
+		Prepared(ClassNode original, ClassNode transformed) {
+			classFrom = original.access;
+			classTo = transformed.access;
+			methodCount = original.methods.size();
+		}
+
+		boolean matches(ClassNode node) {
+			if (node.access != classFrom || node.methods.size() != methodCount) return false;
+
+			for (AccessChange change : innerClasses) {
+				if (change.index >= node.innerClasses.size()) return false;
+				InnerClassNode innerClass = node.innerClasses.get(change.index);
+				if (innerClass.access != change.from || !change.name.equals(innerClass.name)) return false;
+			}
+
+			for (AccessChange change : methods) {
+				MethodNode method = node.methods.get(change.index);
+				if (method.access != change.from || !change.name.equals(method.name) || !change.desc.equals(method.desc)) return false;
+			}
+
+			for (OpcodeChange change : opcodes) {
+				MethodNode method = node.methods.get(change.method);
+				if (change.insn >= method.instructions.size()) return false;
+
+				AbstractInsnNode insn = method.instructions.get(change.insn);
+				if (insn.getOpcode() != change.from || !(insn instanceof MethodInsnNode)) return false;
+				MethodInsnNode methodInsn = (MethodInsnNode) insn;
+				if (!change.name.equals(methodInsn.name) || !change.desc.equals(methodInsn.desc)) return false;
+			}
+
+			return true;
+		}
+
+		void apply(ClassNode node) {
+			node.access = classTo;
+
+			for (AccessChange change : innerClasses) {
+				node.innerClasses.get(change.index).access = change.to;
+			}
+
+			for (AccessChange change : methods) {
+				node.methods.get(change.index).access = change.to;
+			}
+
+			for (OpcodeChange change : opcodes) {
+				((MethodInsnNode) node.methods.get(change.method).instructions.get(change.insn)).setOpcode(change.to);
+			}
+		}
+	}
+
+	/** The transformations which can be warmed up for each class, by what they're registered as (which might be profiled) */
+	private final Map<String, Map<Consumer<ClassNode>, Consumer<ClassNode>>> transformations = new ConcurrentHashMap<>();
+	private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
+
+	void add(String target, Consumer<ClassNode> registered, Consumer<ClassNode> transformation) {
+		transformations.computeIfAbsent(target, k -> new IdentityHashMap<>()).put(registered, transformation);
+	}
+
+	void start(Collection<String> skip) {
+		transformations.keySet().removeAll(skip);
+		if (transformations.isEmpty()) return;
+
+		int threads = Math.max(1, Math.min(transformations.size() / 64, Runtime.getRuntime().availableProcessors() - 1));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("MM Warm-up %d").setDaemon(true).build());
+
+		//Prepare whatever was needed first last time first
+		for (String target : LoadOrder.sort(transformations.keySet())) {
+			Collection<Consumer<ClassNode>> transformers = transformations.get(target).values();
+
+			executor.execute(() -> {
+				try {
+					Prepared result = prepare(target, transformers);
+					//If the class has loaded in the mean time there's no point keeping the result
+					if (result != null && transformations.containsKey(target)) prepared.put(target, result);
+				} catch (IOException | RuntimeException e) {
+					//Not a problem now, the class will be transformed normally when it loads
+					MM.LOGGER.debug("Unable to warm up " + target, e);
+				}
+			});
+		}
+
+		executor.shutdown(); //Let the threads go once everything is prepared
+	}
+
+	static Prepared prepare(String target, Collection<Consumer<ClassNode>> transformers) throws IOException {
+		byte[] bytecode;
+		try (InputStream in = WarmUp.class.getResourceAsStream('/' + target + ".class")) {
+			if (in == null) return null; //Not a class we can find
+			bytecode = ByteStreams.toByteArray(in);
+		}
+
+		//Read the class as Mixin will, so the instruction indices line up
+		ClassReader reader = new ClassReader(bytecode);
+		ClassNode original = new ClassNode();
+		reader.accept(original, ClassReader.EXPAND_FRAMES);
+		ClassNode node = new ClassNode();
+		reader.accept(node, ClassReader.EXPAND_FRAMES);
+
+		for (Consumer<ClassNode> transformer : transformers) {
+			transformer.accept(node);
+		}
+
+		if (node.methods.size() != original.methods.size() || node.innerClasses.size() != original.innerClasses.size()) return null;
+		Prepared out = new Prepared(original, node);
+
+		for (int i = 0; i < node.innerClasses.size(); i++) {
+			InnerClassNode before = original.innerClasses.get(i);
+			InnerClassNode after = node.innerClasses.get(i);
+			if (before.access != after.access) out.innerClasses.add(new AccessChange(i, before.name, null, before.access, after.access));
+		}
+
+		for (int i = 0; i < node.methods.size(); i++) {
+			MethodNode before = original.methods.get(i);
+			MethodNode after = node.methods.get(i);
+			if (before.access != after.access) out.methods.add(new AccessChange(i, before.name, before.desc, before.access, after.access));
+
+			if (before.instructions.size() != after.instructions.size()) return null;
+			int insn = 0;
+			for (AbstractInsnNode beforeInsn = before.instructions.getFirst(), afterInsn = after.instructions.getFirst(); beforeInsn != null;
+					beforeInsn = beforeInsn.getNext(), afterInsn = afterInsn.getNext(), insn++) {
+				if (beforeInsn.getOpcode() != afterInsn.getOpcode()) {
+					if (!(beforeInsn instanceof MethodInsnNode)) return null; //Not something we know how to splice
+					MethodInsnNode methodInsn = (MethodInsnNode) beforeInsn;
+					out.opcodes.add(new OpcodeChange(i, insn, methodInsn.name, methodInsn.desc, beforeInsn.getOpcode(), afterInsn.getOpcode()));
+				}
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Applies the warmed up transformations for the given class, if they're ready and the class is as expected
+	 *
+	 * @param target The internal name of the class being transformed
+	 * @param node The class being transformed
+	 *
+	 * @return The (registered) transformations which no longer need to be run
+	 */
+	Set<Consumer<ClassNode>> splice(String target, ClassNode node) {
+		Map<Consumer<ClassNode>, Consumer<ClassNode>> registered = transformations.remove(target);
+		Prepared result = prepared.remove(target);
+		if (registered == null || result == null || !result.matches(node)) return Collections.emptySet();
+
+		result.apply(node);
+		return registered.keySet();
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import net.fabricmc.loader.api.MappingResolver;
+
+/**
+ * Maps Intermediary names to runtime ones for {@link ClassTinkerers}, only asking the {@link MappingResolver} about each
+ * name once. The resolver is only looked up when a name isn't known yet, so nothing is asked of Fabric Loader until
+ * something actually needs mapping.
+ */
+final class CachedMappings {
+	/** Intermediary names to runtime ones, shared between every mod */
+	private final Map<String, String> classes = new ConcurrentHashMap<>(), members = new ConcurrentHashMap<>();
+	private final Supplier<MappingResolver> mappings;
+
+	CachedMappings(Supplier<MappingResolver> mappings) {
+		this.mappings = mappings;
+	}
+
+	String mapClass(String name) {
+		return classes.computeIfAbsent(name.replace('.', '/'), intermediary -> {
+			return mappings.get().mapClassName("intermediary", intermediary.replace('/', '.')).replace('.', '/');
+		});
+	}
+
+	String[] mapClasses(String... names) {
+		String[] out = new String[names.length];
+
+		for (int i = 0; i < names.length; i++) {
+			out[i] = mapClass(names[i]);
+		}
+
+		return out;
+	}
+
+	String mapMethod(String owner, String name, String desc) {
+		String internalOwner = owner.replace('.', '/');
+
+		return members.computeIfAbsent(internalOwner + '.' + name + desc, k -> {
+			return mappings.get().mapMethodName("intermediary", internalOwner.replace('/', '.'), name, desc);
+		});
+	}
+
+	String mapField(String owner, String name, String desc) {
+		String internalOwner = owner.replace('.', '/');
+
+		return members.computeIfAbsent(internalOwner + ':' + name + ':' + desc, k -> {
+			return mappings.get().mapFieldName("intermediary", internalOwner.replace('/', '.'), name, desc);
+		});
+	}
+}
@@ -7,27 +7,40 @@
  */
 package com.chocohead.mm.api;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
 import org.apache.commons.lang3.ArrayUtils;
 
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
+import net.fabricmc.loader.api.FabricLoader;
+
 /**
  * A collection of helper methods to allow adding and changing the definition of classes.
  *
  * <p>Class transformations via {@link #addTransformation(String, Consumer)} and additional enum entries via
  * {@link #enumBuilder(String, Class...)} should be done via an Early Riser.
- * Additional class definitions via {@link #define(String, byte[])} can be done at any time.
+ * Additional class definitions via {@link #define(String, byte[])} and class inspections via
+ * {@link #addInspector(String, ClassVisitor)} can be done at any time.
  *
  * <p><b>Non-static methods are to be treated as non-API and thus should be left alone.</b>
  *
@@ -36,6 +49,28 @@ import org.objectweb.asm.tree.ClassNode;
 public enum ClassTinkerers {
 	INSTANCE;
 
+	private static final class EnumConstants<E extends Enum<E>> {
+		final List<E> values;
+		final Map<String, E> names;
+
+		EnumConstants(Class<E> type) {
+			E[] constants = type.getEnumConstants(); //Added entries will be in here too
+			if (constants == null) throw new IllegalArgumentException("Tried to get enum constants of non-enum type " + type);
+
+			values = ImmutableList.copyOf(constants);
+			names = ImmutableMap.copyOf(Maps.uniqueIndex(values, Enum::name));
+		}
+	}
+	private static final ClassValue<EnumConstants<?>> ENUM_CONSTANTS = new ClassValue<EnumConstants<?>>() {
+		@Override
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		protected EnumConstants<?> computeValue(Class<?> type) {
+			return new EnumConstants(type);
+		}
+	};
+
+	private static final CachedMappings MAPPINGS = new CachedMappings(() -> FabricLoader.getInstance().getMappingResolver());
+
 	private Predicate<URL> urlers = url -> false;
 	private Map<String, byte[]> clazzes = new HashMap<>();
 	private Map<String, Consumer<ClassNode>> replacers = new HashMap<>();
@@ -129,6 +164,52 @@ public enum ClassTinkerers {
 		INSTANCE.replacers.put(name, replacer);
 	}
 
+	/**
+	 * Add a replacement for the given class {@link target} which is entirely the given bytecode.
+	 * <p><b>Does nothing if the target class is already defined</b>
+	 *
+	 * <p>This is for when the original contents of the target class are not needed at all, the {@code contents} are read
+	 * straight into the {@link ClassNode} in place of the original rather than having to be copied over. The replacement
+	 * must have the same name and super class as the original. Otherwise this is the same as a normal
+	 * {@link #addReplacement(String, Consumer) replacement}.
+	 *
+	 * @param target The name of the class to be replaced
+	 * @param contents The bytecode for the class to replace the target with
+	 *
+	 * @throws NullPointerException If target is {@code null}
+	 * @throws IllegalArgumentException If contents is {@code null}
+	 * @throws IllegalStateException If replacement for the target has already been registered
+	 *
+	 * @since 2.4
+	 */
+	public static void addRawReplacement(String target, byte[] contents) {
+		if (contents == null) throw new IllegalArgumentException("Tried to set null replacement for " + target);
+		addReplacement(target, new RawReplacement(target.replace('.', '/'), contents));
+	}
+
+	/**
+	 * Add a replacement for the given class {@link target} which is entirely written by the given {@code generator}.
+	 * <p><b>Does nothing if the target class is already defined</b>
+	 *
+	 * <p>This is for when the original contents of the target class are not needed at all, the {@code generator} is given
+	 * a {@link ClassVisitor} to write the replacement class to in place of the original. The replacement must have the same
+	 * name and super class as the original. Otherwise this is the same as a normal
+	 * {@link #addReplacement(String, Consumer) replacement}.
+	 *
+	 * @param target The name of the class to be replaced
+	 * @param generator A {@link Consumer} to write the replacement class to the given {@link ClassVisitor}
+	 *
+	 * @throws NullPointerException If target is {@code null}
+	 * @throws IllegalArgumentException If generator is {@code null}
+	 * @throws IllegalStateException If replacement for the target has already been registered
+	 *
+	 * @since 2.4
+	 */
+	public static void addRawReplacement(String target, Consumer<ClassVisitor> generator) {
+		if (generator == null) throw new IllegalArgumentException("Tried to set null replacement generator for " + target);
+		addReplacement(target, new RawReplacement(target.replace('.', '/'), generator));
+	}
+
 	/**
 	 * Add a class transformer for the given class {@link target} to allow modifying the bytecode during definition.
 	 * <p><b>Does nothing if the target class is already defined</b>
@@ -151,6 +232,43 @@ public enum ClassTinkerers {
 		INSTANCE.tinkerers.computeIfAbsent(target.replace('.', '/'), k -> new HashSet<>()).add(transformer);
 	}
 
+	/**
+	 * Give the given {@code inspector} the untransformed contents of the given class {@link target}, without changing it.
+	 *
+	 * <p>This method is designed for when a class only needs looking at (such as to find annotations or whether a method
+	 * is present), it is run straight away on the target's bytecode as it is on the classpath (or as it was
+	 * {@link #define(String, byte[]) defined}). Unlike {@link #addTransformation(String, Consumer) transformations} no Mixin
+	 * is needed and the target is left to load as normal, so this can be used at any time (even after the target has loaded).
+	 * Method bodies are skipped, so only the class's header, fields and method declarations are visited.
+	 *
+	 * @param target The name of the class to be inspected
+	 * @param inspector A {@link ClassVisitor} to be given the target class's contents
+	 * @return Whether the target class could be found (and thus was inspected)
+	 *
+	 * @throws NullPointerException If target is {@code null}
+	 * @throws IllegalArgumentException If inspector is {@code null}
+	 * @throws IllegalStateException If the target class could not be read
+	 *
+	 * @since 2.4
+	 */
+	public static boolean addInspector(String target, ClassVisitor inspector) {
+		if (inspector == null) throw new IllegalArgumentException("Tried to add null inspector for " + target);
+		String name = '/' + target.replace('.', '/') + ".class";
+
+		byte[] contents = INSTANCE.clazzes.get(name);
+		if (contents == null) {
+			try (InputStream in = ClassTinkerers.class.getResourceAsStream(name)) {
+				if (in == null) return false;
+				contents = ByteStreams.toByteArray(in);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to read " + name + " to inspect", e);
+			}
+		}
+
+		new ClassReader(contents).accept(inspector, ClassReader.SKIP_CODE);
+		return true;
+	}
+
 	/**
 	 * Create a new {@link EnumAdder} in order to add additional Enum entries to the given type name.
 	 * <p>Nothing will be done if the given Enum type has already been loaded.</p>
@@ -254,9 +372,85 @@ public enum ClassTinkerers {
 		if (!builder.getAdditions().isEmpty()) INSTANCE.enumExtensions.add(builder);
 	}
 
+	/**
+	 * Maps the given Intermediary class name to its name at runtime, in the internal form (ie {@code net/minecraft/class_1234})
+	 * as taken by all the other methods here, thus can be passed straight to them.
+	 *
+	 * <p>Every name is only mapped once no matter how many times (or how many mods) ask for it, so this is safe to use as
+	 * often as is desired.
+	 *
+	 * @param name The Intermediary name of the class, either with {@code .}s or {@code /}s
+	 * @return The internal name of the class at runtime
+	 *
+	 * @throws NullPointerException If name is {@code null}
+	 *
+	 * @since 2.4
+	 */
+	public static String mapClass(String name) {
+		return MAPPINGS.mapClass(name);
+	}
+
+	/**
+	 * Maps all the given Intermediary class names to their names at runtime, as per {@link #mapClass(String)}
+	 *
+	 * @param names The Intermediary names of the classes, either with {@code .}s or {@code /}s
+	 * @return The internal names of the classes at runtime, in the same order as they were given
+	 *
+	 * @throws NullPointerException If names is or contains {@code null}
+	 *
+	 * @since 2.4
+	 */
+	public static String[] mapClasses(String... names) {
+		return MAPPINGS.mapClasses(names);
+	}
+
+	/**
+	 * Maps the given Intermediary method name to its name at runtime
+	 *
+	 * <p>As with {@link #mapClass(String)} every method is only mapped once.
+	 *
+	 * @param owner The Intermediary name of the class which has the method, either with {@code .}s or {@code /}s
+	 * @param name The Intermediary name of the method
+	 * @param desc The Intermediary descriptor of the method
+	 * @return The name of the method at runtime
+	 *
+	 * @throws NullPointerException If owner, name or desc are {@code null}
+	 *
+	 * @since 2.4
+	 */
+	public static String mapMethod(String owner, String name, String desc) {
+		return MAPPINGS.mapMethod(owner, name, desc);
+	}
+
+	/**
+	 * Maps the given Intermediary field name to its name at runtime
+	 *
+	 * <p>As with {@link #mapClass(String)} every field is only mapped once.
+	 *
+	 * @param owner The Intermediary name of the class which has the field, either with {@code .}s or {@code /}s
+	 * @param name The Intermediary name of the field
+	 * @param desc The Intermediary descriptor of the field
+	 * @return The name of the field at runtime
+	 *
+	 * @throws NullPointerException If owner, name or desc are {@code null}
+	 *
+	 * @since 2.4
+	 */
+	public static String mapField(String owner, String name, String desc) {
+		return MAPPINGS.mapField(owner, name, desc);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Enum<E>> EnumConstants<E> getConstants(Class<E> type) {
+		if (type == null) throw new NullPointerException("Tried to get constants of a null type!");
+		return (EnumConstants<E>) ENUM_CONSTANTS.get(type);
+	}
+
 	/**
 	 * Gets the Enum entry with the given name from the given enum type
 	 *
+	 * <p>The entries of each type are only looked up once, so this is safe to use as often as is desired.
+	 *
 	 * @param type The type of Enum for which to search in
 	 * @param name The name of the entry to return
 	 * @return The entry within type that has {@link Enum#name()} equal to name
@@ -265,12 +459,46 @@ public enum ClassTinkerers {
 	 * @throws IllegalArgumentException If no entry with the given name can be found in type
 	 */
 	public static <E extends Enum<E>> E getEnum(Class<E> type, String name) {
-		for (E constant : type.getEnumConstants()) {
-			if (constant.name().equals(name)) {
-				return constant;
-			}
-		}
+		E constant = getConstants(type).names.get(name);
+		if (constant == null) throw new IllegalArgumentException("Unable to find " + name + " in " + type);
+
+		return constant;
+	}
+
+	/**
+	 * Gets the Enum entry with the given ordinal from the given enum type
+	 *
+	 * @param type The type of Enum for which to search in
+	 * @param ordinal The ordinal of the entry to return
+	 * @return The entry within type that has {@link Enum#ordinal()} equal to ordinal
+	 *
+	 * @throws NullPointerException If type is {@code null}
+	 * @throws IllegalArgumentException If no entry with the given ordinal exists in type
+	 *
+	 * @since 2.4
+	 */
+	public static <E extends Enum<E>> E getEnum(Class<E> type, int ordinal) {
+		List<E> values = getConstants(type).values;
+		if (ordinal < 0 || ordinal >= values.size())
+			throw new IllegalArgumentException("Unable to find ordinal " + ordinal + " in " + type + " (has " + values.size() + " entries)");
 
-		throw new IllegalArgumentException("Unable to find " + name + " in " + type);
+		return values.get(ordinal);
+	}
+
+	/**
+	 * Gets all the Enum entries of the given enum type, including any added ones
+	 *
+	 * <p>Unlike {@link Class#getEnumConstants()} (or the enum's {@code values()}) the returned list is not a copy, it is
+	 * shared between all callers and thus is immutable. Subsequently it is safe to use as often as is desired.
+	 *
+	 * @param type The type of Enum to get the entries of
+	 * @return An immutable list of all the entries within type, in ordinal order
+	 *
+	 * @throws NullPointerException If type is {@code null}
+	 *
+	 * @since 2.4
+	 */
+	public static <E extends Enum<E>> List<E> getEnumValues(Class<E> type) {
+		return getConstants(type).values;
 	}
 }
\ No newline at end of file
@@ -83,6 +83,8 @@ public final class EnumAdder {
 		}
 	}
 
+	/** Walking the stack to find who made each builder isn't free, so is only done when something will use it */
+	private static final boolean FIND_SOURCE = Boolean.getBoolean("mm.verify");
 	/** The name of the enum being added to */
 	public final String type;
 	/** The parameter types of the constructor being used */
@@ -91,6 +93,8 @@ public final class EnumAdder {
 	private final List<EnumAddition> additions = new ArrayList<>();
 	/** Whether {@link #build()} has been called */
 	private boolean finished = false;
+	/** The name of the class which made the builder */
+	private final String source;
 
 	/**
 	 * New {@link EnumAdder}s can be made via {@link ClassTinkerers#enumBuilder(String, Class...)}
@@ -142,6 +146,15 @@ public final class EnumAdder {
 	private EnumAdder(String type, Type[] parameterTypes) {
 		this.type = type;
 		this.parameterTypes = parameterTypes;
+		source = FIND_SOURCE ? findCaller() : null;
+	}
+
+	private static String findCaller() {
+		for (StackTraceElement frame : new Throwable().getStackTrace()) {
+			if (!frame.getClassName().startsWith("com.chocohead.mm.api.")) return frame.getClassName();
+		}
+
+		return ClassTinkerers.class.getName(); //Shouldn't happen, the builder has to have been asked for by something
 	}
 
 	/**
@@ -285,6 +298,18 @@ public final class EnumAdder {
 		return Collections.unmodifiableCollection(additions);
 	}
 
+	/**
+	 * Get the class which made this builder, which is who any problems with the additions will be put down to
+	 *
+	 * @return The binary name of the class which called {@link ClassTinkerers#enumBuilder(String)} (or one of its overloads),
+	 *         or {@code null} if MM isn't verifying the classes it changes (via {@code -Dmm.verify=true})
+	 *
+	 * @since 2.4
+	 */
+	public String getSource() {
+		return source;
+	}
+
 	/**
 	 * Get whether any of the additions made will subclass the Enum
 	 *
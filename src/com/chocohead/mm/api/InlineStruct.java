@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a structure class for {@link EnumAdder#addEnumSubclass(String, String, Object...) enum subclasses} to have its
+ * methods copied directly into the generated subclass rather than being called via an instance of the structure.
+ *
+ * <p>This avoids an extra method call (and potentially a bridge back into the enum) each time an overridden method is
+ * called, at the expense of the structure class being more limited in what it can do. Inlined structure classes must:
+ * 	<ul>
+ * 		<li>Directly extend the (unregistered) Mixin to the target enum
+ * 		<li>Not declare any fields, either static or instance
+ * 		<li>Not have a static block, nor a constructor which does anything beyond calling {@code super()}
+ * 		<li>Not refer to their own type, beyond calling their own methods
+ * 	</ul>
+ * Any of these not being met will result in an {@link IllegalStateException} when the target enum is transformed.
+ *
+ * <p>Within inlined methods {@code this} will be the enum entry itself, and any methods which override the enum's will be
+ * made {@code final}. Given the structure class is never instantiated, it should not be loaded at all.
+ *
+ * @author Chocohead
+ *
+ * @since 2.4
+ */
+@Retention(CLASS)
+@Target(TYPE)
+public @interface InlineStruct {
+}
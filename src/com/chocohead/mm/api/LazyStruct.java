@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a structure class for {@link EnumAdder#addEnumSubclass(String, String, Object...) enum subclasses} to only be
+ * created the first time one of the enum entry's overridden methods is called, rather than when the enum itself loads.
+ *
+ * <p>This saves creating (and potentially loading) the structure class for entries which are never used, at the expense
+ * of a little more work the first time each entry's structure is needed. Only one structure instance will ever be made
+ * for each entry, even if multiple threads race to use it. Making it locks on a private object rather than the entry, so
+ * synchronising on the entry itself won't hold it up.
+ *
+ * <p>Once made the structure is read through a volatile field on every call of an overridden method, which the JIT can't
+ * fold into a constant as it could the final field non-lazy structures are kept in. Structures used on hot paths are
+ * better left eager.
+ *
+ * <p>Lazy structures can't also be {@link InlineStruct inlined}, given inlined structures are never created in the
+ * first place. Only the structure class given to the enum subclass needs to be marked, not any it extends.
+ *
+ * @author Chocohead
+ *
+ * @since 2.4
+ */
+@Retention(CLASS)
+@Target(TYPE)
+public @interface LazyStruct {
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A replacement which writes the new class straight into the {@link ClassNode} Mixin has for the target, rather than
+ * a replacer building its own and copying everything across.
+ *
+ * <p>Mixin has already made its {@link org.spongepowered.asm.mixin.transformer.ClassInfo ClassInfo} for the target by the
+ * time the replacement is run, so the name and super class are checked to still be the same afterwards.
+ */
+final class RawReplacement implements Consumer<ClassNode> {
+	private final String target;
+	private final byte[] contents;
+	private final Consumer<ClassVisitor> generator;
+
+	RawReplacement(String target, byte[] contents) {
+		this.target = target;
+		this.contents = contents;
+		generator = null;
+	}
+
+	RawReplacement(String target, Consumer<ClassVisitor> generator) {
+		this.target = target;
+		contents = null;
+		this.generator = generator;
+	}
+
+	@Override
+	public void accept(ClassNode node) {
+		String name = node.name;
+		String superName = node.superName;
+
+		if (contents != null) {
+			ClassReader reader = new ClassReader(contents);
+			//Only the header is needed to check, so there's no point throwing away the original if it's wrong
+			check(name, superName, reader.getClassName(), reader.getSuperName());
+
+			clear(node);
+			reader.accept(node, ClassReader.EXPAND_FRAMES); //Read as Mixin would have read the original
+		} else {
+			clear(node);
+			generator.accept(node);
+			check(name, superName, node.name, node.superName);
+		}
+	}
+
+	private void check(String name, String superName, String newName, String newSuperName) {
+		if (!name.equals(newName)) {
+			throw new IllegalStateException("Replacement for " + name + " is called " + newName + " (from " + this + ')');
+		}
+		if (!Objects.equals(superName, newSuperName)) {
+			throw new IllegalStateException("Replacement for " + name + " changes its super class from " + superName + " to " + newSuperName + " which Mixin won't expect (from " + this + ')');
+		}
+	}
+
+	private static void clear(ClassNode node) {
+		node.signature = null;
+		node.interfaces.clear();
+		node.sourceFile = null;
+		node.sourceDebug = null;
+		node.module = null;
+		node.outerClass = null;
+		node.outerMethod = null;
+		node.outerMethodDesc = null;
+		node.visibleAnnotations = null;
+		node.invisibleAnnotations = null;
+		node.visibleTypeAnnotations = null;
+		node.invisibleTypeAnnotations = null;
+		node.attrs = null;
+		node.innerClasses.clear();
+		node.nestHostClass = null;
+		node.nestMembers = null;
+		node.fields.clear();
+		node.methods.clear();
+	}
+
+	@Override
+	public String toString() {
+		return (contents != null ? "raw replacement of " : "generated replacement of ") + target + (generator != null ? " by " + generator : "");
+	}
+}
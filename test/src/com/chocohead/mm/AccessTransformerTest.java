@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class AccessTransformerTest {
+	private static ClassNode makeClass() {
+		ClassNode node = new ClassNode();
+		node.visit(Opcodes.V1_8, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, "test/Target", null, "java/lang/Object", null);
+
+		MethodNode caller = (MethodNode) node.visitMethod(Opcodes.ACC_PUBLIC, "caller", "()V", null, null);
+		caller.visitVarInsn(Opcodes.ALOAD, 0);
+		caller.visitMethodInsn(Opcodes.INVOKESPECIAL, "test/Target", "secret", "()V", false);
+		caller.visitInsn(Opcodes.RETURN);
+
+		MethodNode secret = (MethodNode) node.visitMethod(Opcodes.ACC_PRIVATE, "secret", "()V", null, null);
+		secret.visitInsn(Opcodes.RETURN);
+
+		node.visitEnd();
+		return node;
+	}
+
+	private static void assertWidened(ClassNode node, boolean wholeClass) {
+		try {
+			assertEquals(wholeClass, (node.access & Opcodes.ACC_PUBLIC) != 0);
+			assertEquals(!wholeClass, (node.access & Opcodes.ACC_FINAL) != 0);
+
+			MethodNode secret = MemberIndex.of(node).getMethod("secret", "()V");
+			assertEquals(Opcodes.ACC_PUBLIC, secret.access);
+			assertEquals(Opcodes.INVOKEVIRTUAL, ((MethodInsnNode) node.methods.get(0).instructions.get(1)).getOpcode());
+		} finally {
+			MemberIndex.release(node);
+		}
+	}
+
+	@Test
+	public void reapply() {
+		Set<String> transforms = new HashSet<>(Arrays.asList("<*>", "secret()V"));
+		Consumer<ClassNode> transformer = Plugin.makeAT(transforms, false);
+
+		//Warming up or overlaying can run the transformer more than once, which mustn't lose the class wide change
+		for (int i = 0; i < 3; i++) {
+			ClassNode node = makeClass();
+			transformer.accept(node);
+			MemberIndex.release(node);
+			assertWidened(node, true);
+		}
+		assertTrue(transforms.contains("<*>")); //Mustn't change what the overlay's fingerprint is made from
+	}
+
+	@Test
+	public void reload() {
+		Set<String> transforms = new HashSet<>(Arrays.asList("<*>", "secret()V"));
+		Consumer<ClassNode> transformer = Plugin.makeAT(transforms, true);
+
+		ClassNode node = makeClass();
+		transformer.accept(node);
+		MemberIndex.release(node);
+		assertWidened(node, true);
+		assertTrue(transforms.contains("<*>")); //Has to stay so the reloader can compare against a changed file
+
+		synchronized (transforms) {//As ATReloader changes it
+			transforms.remove("<*>");
+		}
+
+		node = makeClass();
+		transformer.accept(node);
+		MemberIndex.release(node);
+		assertWidened(node, false);
+	}
+}
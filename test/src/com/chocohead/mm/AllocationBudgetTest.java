@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.mixin.transformer.ext.ITargetClassContext;
+
+/**
+ * Checks the hooks MM has in class loading stay within a fixed number of bytes allocated per call, so anything which
+ * starts allocating on every class the game loads fails the build rather than going unnoticed.
+ */
+public class AllocationBudgetTest {
+	private interface Call {
+		void run() throws Exception;
+	}
+	private static final int WARMUP = 20_000, CALLS = 200_000;
+	private static final String TARGET = "game/Target", MIXIN = "com.chocohead.gen.mixin.MassExport_1";
+	private static ThreadMXBean threads;
+
+	@BeforeClass
+	public static void checkSupported() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+		threads = (ThreadMXBean) bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	private static void assertWithinBudget(String name, long budget, Call call) throws Exception {
+		for (int i = 0; i < WARMUP; i++) call.run();
+
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < CALLS; i++) call.run();
+		long perCall = (threads.getThreadAllocatedBytes(thread) - before) / CALLS; //Rounding down takes out measuring itself
+
+		assertTrue(name + " allocated " + perCall + " bytes per call, over its budget of " + budget, perCall <= budget);
+	}
+
+	private static ClassNode makeClass(String name) {
+		ClassNode node = new ClassNode();
+		node.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		node.visitEnd();
+		return node;
+	}
+
+	private static void set(Object on, String field, Object value) throws ReflectiveOperationException {
+		Field f = on.getClass().getDeclaredField(field);
+		f.setAccessible(true);
+		f.set(on, value);
+	}
+
+	private static Plugin makePlugin(Map<String, Set<Consumer<ClassNode>>> classModifiers) throws ReflectiveOperationException {
+		Plugin plugin = new Plugin();
+		set(plugin, "classModifiers", classModifiers);
+		set(plugin, "classReplacers", new ConcurrentHashMap<>());
+		set(plugin, "enumExtenders", new HashSet<>());
+		return plugin;
+	}
+
+	@Test
+	public void pluginPreApply() throws Exception {
+		Map<String, Set<Consumer<ClassNode>>> classModifiers = new ConcurrentHashMap<>();
+		Plugin plugin = makePlugin(classModifiers);
+		ClassNode node = makeClass(TARGET);
+
+		//A Mixin targeting a class MM has nothing to do to
+		assertWithinBudget("Plugin#preApply (nothing to do)", 0, () -> plugin.preApply(TARGET, node, MIXIN, null));
+
+		//Going through the transformations a class has mustn't cost more than the iterator to do so
+		Set<Consumer<ClassNode>> transformations = new HashSet<>();
+		transformations.add(target -> {});
+		classModifiers.put(TARGET, transformations);
+		assertWithinBudget("Plugin#preApply (one transformation)", 48, () -> plugin.preApply(TARGET, node, MIXIN, null));
+	}
+
+	@Test
+	public void pluginPostApply() throws Exception {
+		Plugin plugin = makePlugin(new ConcurrentHashMap<>());
+		ClassNode node = makeClass(TARGET);
+		node.interfaces.add("java/lang/Runnable");
+		String mixin = MIXIN.replace('.', '/');
+
+		//Finding the Mixin's interface again and retiring the class (which has already been) should be free
+		assertWithinBudget("Plugin#postApply", 0, () -> {
+			node.interfaces.add(mixin); //As Mixin will have done
+			plugin.postApply(TARGET, node, MIXIN, null);
+		});
+		assertTrue(Collections.singletonList("java/lang/Runnable").equals(node.interfaces));
+	}
+
+	@Test
+	public void extension() throws Exception {
+		Map<String, Consumer<ClassNode>> classReplacers = new ConcurrentHashMap<>();
+		Extension extension = new Extension("com/chocohead/gen/mixin/", classReplacers);
+		ClassNode node = makeClass("java/lang/Object");
+		node.signature = "Ljava/lang/Object;Ljava/lang/Runnable;";
+		ClassInfo info = ClassInfo.forName("java/lang/Object");
+		assertNotNull(info);
+
+		ITargetClassContext context = new ITargetClassContext() {
+			@Override
+			public ClassInfo getClassInfo() {
+				return info;
+			}
+
+			@Override
+			public ClassNode getClassNode() {
+				return node;
+			}
+		};
+
+		//Neither a class with a replacement nor one with a Mixin in its signature
+		assertWithinBudget("Extension#preApply", 0, () -> extension.preApply(context));
+		assertWithinBudget("Extension#postApply", 0, () -> extension.postApply(context));
+	}
+
+	@Test
+	public void casualStreamHandler() throws Exception {
+		Map<String, byte[]> classes = new ConcurrentHashMap<>();
+		classes.put("/com/chocohead/gen/mixin/MassExport_1.class", new byte[0]);
+		CasualStreamHandler handler = new CasualStreamHandler(classes);
+		URL theirs = new URL("magic-at", null, -1, "/game/Target.class", handler);
+		URL ours = new URL("magic-at", null, -1, "/com/chocohead/gen/mixin/MassExport_1.class", handler);
+
+		//The class loader asks every URL it has for every class it loads, nearly all of which aren't ours
+		assertWithinBudget("CasualStreamHandler#openConnection (not ours)", 0, () -> assertNull(handler.openConnection(theirs)));
+		//Whereas for those which are only the connection should be made
+		assertWithinBudget("CasualStreamHandler#openConnection (ours)", 128, () -> {
+			if (handler.openConnection(ours) == null) throw new IOException("Lost connection to " + ours);
+		});
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.chocohead.mm.api.ClassTinkerers;
+import com.chocohead.mm.api.EnumAdder;
+
+/**
+ * Stands in for Mixin in {@link EnumSubclasserStressTest}, extending the synthetic enums and fixing their structs as
+ * they are loaded. Loaded in the test's class loader along with the rest of MM so each test starts afresh.
+ */
+final class EnumStressTransformer implements BiFunction<String, byte[], byte[]> {
+	private final Map<String, byte[]> definitions = new ConcurrentHashMap<>();
+
+	EnumStressTransformer() {
+		ClassTinkerers.INSTANCE.hookUp(url -> {}, definitions, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+	}
+
+	@Override
+	public byte[] apply(String name, byte[] bytecode) {
+		byte[] definition = definitions.get('/' + name + ".class");
+		if (definition != null) return definition;
+		if (bytecode == null) return null;
+
+		ClassNode node = new ClassNode();
+		new ClassReader(bytecode).accept(node, ClassReader.EXPAND_FRAMES);
+
+		String kind = name.substring(name.lastIndexOf('/') + 1, name.lastIndexOf('/') + 2);
+		String index = name.substring(name.lastIndexOf('/') + 2);
+		switch (kind) {
+		case "E": {
+			EnumAdder builder = ClassTinkerers.enumBuilder(name).addEnum("X").addEnumSubclass("SA", "synthetic.A" + index)
+					.addEnumSubclass("SB", "synthetic.B" + index).addEnumSubclass("SI", "synthetic.I" + index).addEnumSubclass("SA2", "synthetic.A" + index);
+			builder.build();
+			EnumExtender.makeEnumExtender(builder).accept(node);
+			EnumSubclasser.enumDefined(name); //As Plugin#postApply would
+			break;
+		}
+
+		case "P":
+		case "A":
+		case "B":
+			EnumSubclasser.makeStructFixer(name, "synthetic/E" + index).accept(node);
+			break;
+
+		default: //Mixins and inlined structs should never be loaded
+			throw new IllegalStateException("Unexpectedly loaded " + name);
+		}
+
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		node.accept(writer);
+		return writer.toByteArray();
+	}
+}
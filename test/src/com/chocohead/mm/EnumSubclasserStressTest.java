@@ -0,0 +1,353 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import org.spongepowered.asm.mixin.Mixin;
+
+import com.chocohead.mm.api.InlineStruct;
+import com.chocohead.mm.api.LazyStruct;
+
+public class EnumSubclasserStressTest {
+	/** Loads MM afresh, along with the synthetic classes which are transformed as they're defined like Mixin would */
+	static final class TransformingLoader extends URLClassLoader {
+		static {
+			registerAsParallelCapable();
+		}
+		private BiFunction<String, byte[], byte[]> transformer;
+
+		@SuppressWarnings("unchecked")
+		TransformingLoader(Path classes) throws ReflectiveOperationException, IOException {
+			super(new URL[] {classes.toUri().toURL()}, EnumSubclasserStressTest.class.getClassLoader());
+
+			Constructor<?> constructor = loadClass("com.chocohead.mm.EnumStressTransformer").getDeclaredConstructor();
+			constructor.setAccessible(true);
+			transformer = (BiFunction<String, byte[], byte[]>) constructor.newInstance();
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith("com.chocohead.mm.") && !name.startsWith("synthetic.")) return super.loadClass(name, resolve);
+
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> type = findLoadedClass(name);
+
+				if (type == null) {
+					byte[] bytecode;
+					try (InputStream in = getResourceAsStream(name.replace('.', '/') + ".class")) {
+						bytecode = in != null ? ByteStreams.toByteArray(in) : null;
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+
+					if (name.startsWith("synthetic.")) bytecode = transformer.apply(name.replace('.', '/'), bytecode);
+					if (bytecode == null) throw new ClassNotFoundException(name);
+					type = defineClass(name, bytecode, 0, bytecode.length);
+				}
+
+				if (resolve) resolveClass(type);
+				return type;
+			}
+		}
+	}
+	private static final int ENUMS = 64;
+	private static final String[] NAMES = {"A", "B", "X", "SA", "SB", "SI", "SA2"};
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 60_000)
+	public void loadManyEnumsAtOnce() throws Exception {
+		Path classes = folder.getRoot().toPath();
+		Files.createDirectory(classes.resolve("synthetic"));
+		for (int i = 0; i < ENUMS; i++) {
+			writeClasses(classes, i);
+		}
+		ClassLoader loader = new TransformingLoader(classes);
+
+		List<Callable<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < ENUMS; i++) {
+			int index = i;
+			tasks.add(() -> {
+				check(Class.forName("synthetic.E" + index, true, loader), index);
+				return null;
+			});
+
+			//Some structs will be loaded before their enum, which the fixer has to load instead
+			if (i % 2 == 0) tasks.add(() -> Class.forName("synthetic.A" + index, true, loader));
+		}
+		Collections.shuffle(tasks, new Random(ENUMS));
+
+		ExecutorService executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("Enum loader %d").setDaemon(true).build());
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+
+			List<Future<?>> results = new ArrayList<>();
+			for (Callable<?> task : tasks) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+
+			for (Future<?> result : results) {
+				result.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void fixSharedParentsAtOnce() throws Exception {
+		Path classes = folder.getRoot().toPath();
+		Files.createDirectory(classes.resolve("synthetic"));
+		for (int i = 0; i < ENUMS; i++) {
+			writeClasses(classes, i);
+		}
+		ClassLoader loader = new TransformingLoader(classes);
+		Method prepare = Class.forName("com.chocohead.mm.EnumSubclasser", true, loader).getDeclaredMethod("prepareAnonymousSubclass", ClassNode.class, String.class, String.class, String.class);
+		prepare.setAccessible(true);
+
+		//Subclasses for structs sharing a parent being written on different threads (as preparing them in the background does)
+		List<Callable<List<MethodNode>>> tasks = new ArrayList<>();
+		for (int i = 0; i < ENUMS; i++) {
+			byte[] enumBytes = Files.readAllBytes(classes.resolve("synthetic/E" + i + ".class"));
+
+			for (String struct : new String[] {"A", "A", "B"}) {
+				String structClass = "synthetic/" + struct + i;
+				tasks.add(() -> {
+					ClassNode enumNode = new ClassNode();
+					new ClassReader(enumBytes).accept(enumNode, 0);
+					int existing = enumNode.methods.size();
+
+					prepare.invoke(null, enumNode, structClass, enumNode.name + '$' + struct, "(Ljava/lang/String;I)V");
+					return enumNode.methods.subList(existing, enumNode.methods.size());
+				});
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("Subclass writer %d").setDaemon(true).build());
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+
+			List<Future<List<MethodNode>>> results = new ArrayList<>();
+			for (Callable<List<MethodNode>> task : tasks) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+
+			for (Future<List<MethodNode>> result : results) {
+				//Every subclass calls the Mixin's getAsInt via the parent, so always needs the enum's super bridge
+				List<MethodNode> bridges = result.get(30, TimeUnit.SECONDS);
+				assertTrue(bridges.stream().anyMatch(method -> "MMsuper£getAsInt".equals(method.name) && "()I".equals(method.desc)));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void lazyStructIgnoresEntryLock() throws Exception {
+		Path classes = folder.getRoot().toPath();
+		Files.createDirectory(classes.resolve("synthetic"));
+		writeClasses(classes, 0);
+		Object entry = Class.forName("synthetic.E0", true, new TransformingLoader(classes)).getEnumConstants()[4];
+		assertEquals("SB", ((Enum<?>) entry).name());
+
+		//Mods can synchronise on entries as they please, which mustn't hold up making the lazy struct
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Lazy struct maker").setDaemon(true).build());
+		try {
+			synchronized (entry) {
+				assertEquals(4 + 1 + 20, (int) executor.submit(((IntSupplier) entry)::getAsInt).get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void check(Class<?> type, int index) {
+		Object[] constants = type.getEnumConstants();
+		assertEquals(NAMES.length, constants.length);
+
+		int base = index * 1000;
+		int[] expected = {base, base + 1, base + 2, base + 3 + 1 + 10, base + 4 + 1 + 20, -(base + 5), base + 6 + 1 + 10};
+		for (int i = 0; i < NAMES.length; i++) {
+			assertEquals(NAMES[i], ((Enum<?>) constants[i]).name());
+			assertEquals(type.getName() + '.' + NAMES[i], expected[i], ((IntSupplier) constants[i]).getAsInt());
+		}
+
+		assertSame("Additions using the same struct should share a subclass", constants[3].getClass(), constants[6].getClass());
+	}
+
+	/**
+	 * Writes enum {@code E<index>} with its Mixin {@code M<index>}, parent struct {@code P<index>}, structs {@code A<index>}
+	 * and lazy {@code B<index>} which extend it, and inlined struct {@code I<index>}. The enum's {@link IntSupplier#getAsInt()}
+	 * gives {@code 1000 * index} plus the ordinal, with each struct adding or negating it in turn.
+	 */
+	private static void writeClasses(Path classes, int index) throws IOException {
+		String name = "synthetic/E" + index;
+		String mixin = "synthetic/M" + index;
+		String parent = "synthetic/P" + index;
+
+		write(classes, name, writeEnum(name, index * 1000));
+		write(classes, mixin, writeClass(mixin, "java/lang/Object", Mixin.class, null));
+		write(classes, parent, writeClass(parent, mixin, null, m -> add(m, 1)));
+		write(classes, "synthetic/A" + index, writeClass("synthetic/A" + index, parent, null, m -> add(m, 10)));
+		write(classes, "synthetic/B" + index, writeClass("synthetic/B" + index, parent, LazyStruct.class, m -> add(m, 20)));
+		write(classes, "synthetic/I" + index, writeClass("synthetic/I" + index, mixin, InlineStruct.class, m -> m.visitInsn(Opcodes.INEG)));
+	}
+
+	private static void add(MethodVisitor method, int value) {
+		method.visitIntInsn(Opcodes.BIPUSH, value);
+		method.visitInsn(Opcodes.IADD);
+	}
+
+	private static void write(Path classes, String name, byte[] bytecode) throws IOException {
+		Files.write(classes.resolve(name + ".class"), bytecode);
+	}
+
+	private static byte[] writeEnum(String name, int base) {
+		String desc = 'L' + name + ';';
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, name, "Ljava/lang/Enum<" + desc + ">;", "java/lang/Enum", new String[] {"java/util/function/IntSupplier"});
+		writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "A", desc, null, null).visitEnd();
+		writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "B", desc, null, null).visitEnd();
+		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, "$VALUES", '[' + desc, null, null).visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[" + desc, null, null);
+		method.visitCode();
+		method.visitFieldInsn(Opcodes.GETSTATIC, name, "$VALUES", '[' + desc);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, '[' + desc, "clone", "()Ljava/lang/Object;", false);
+		method.visitTypeInsn(Opcodes.CHECKCAST, '[' + desc);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PRIVATE, "<init>", "(Ljava/lang/String;I)V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitVarInsn(Opcodes.ALOAD, 1);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Enum", "<init>", "(Ljava/lang/String;I)V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PUBLIC, "getAsInt", "()I", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, name, "ordinal", "()I", false);
+		method.visitLdcInsn(base);
+		method.visitInsn(Opcodes.IADD);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		method.visitCode();
+		for (int i = 0; i < 2; i++) {
+			method.visitTypeInsn(Opcodes.NEW, name);
+			method.visitInsn(Opcodes.DUP);
+			method.visitLdcInsn(NAMES[i]);
+			method.visitInsn(Opcodes.ICONST_0 + i);
+			method.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "(Ljava/lang/String;I)V", false);
+			method.visitFieldInsn(Opcodes.PUTSTATIC, name, NAMES[i], desc);
+		}
+		method.visitInsn(Opcodes.ICONST_2);
+		method.visitTypeInsn(Opcodes.ANEWARRAY, name);
+		for (int i = 0; i < 2; i++) {
+			method.visitInsn(Opcodes.DUP);
+			method.visitInsn(Opcodes.ICONST_0 + i);
+			method.visitFieldInsn(Opcodes.GETSTATIC, name, NAMES[i], desc);
+			method.visitInsn(Opcodes.AASTORE);
+		}
+		method.visitFieldInsn(Opcodes.PUTSTATIC, name, "$VALUES", '[' + desc);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** Writes a class whose {@code getAsInt()} changes the result of calling super, or returns 0 if there's no change */
+	private static byte[] writeClass(String name, String parent, Class<?> annotation, Consumer<MethodVisitor> change) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | (change == null ? Opcodes.ACC_ABSTRACT : 0), name, null, parent, null);
+		if (annotation != null) writer.visitAnnotation(Type.getDescriptor(annotation), false).visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, parent, "<init>", "()V", false);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		method = writer.visitMethod(Opcodes.ACC_PUBLIC, "getAsInt", "()I", null, null);
+		method.visitCode();
+		if (change != null) {
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitMethodInsn(Opcodes.INVOKESPECIAL, parent, "getAsInt", "()I", false);
+			change.accept(method);
+		} else {
+			method.visitInsn(Opcodes.ICONST_0);
+		}
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+}
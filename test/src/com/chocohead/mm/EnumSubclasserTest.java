@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+import org.spongepowered.asm.mixin.Mixin;
+
+import com.chocohead.mm.api.InlineStruct;
+
+public class EnumSubclasserTest {
+	enum InlineTarget {
+		A;
+
+		public int value() {
+			return 1;
+		}
+	}
+	@Mixin(InlineTarget.class)
+	static abstract class InlineTargetMixin {
+		public abstract int value();
+	}
+	@InlineStruct
+	static class Inlined extends InlineTargetMixin {
+		@Override
+		public int value() {
+			return 2;
+		}
+	}
+
+	enum StructTarget {
+		A;
+
+		public int value() {
+			return 1;
+		}
+	}
+	@Mixin(StructTarget.class)
+	static abstract class StructTargetMixin {
+		public int value() {
+			return 0;
+		}
+	}
+	static class ParentStruct extends StructTargetMixin {
+		@Override
+		public int value() {
+			return super.value() + 1;
+		}
+	}
+	static class ChildStruct extends ParentStruct {
+		@Override
+		public int value() {
+			return super.value() + 2;
+		}
+	}
+	private static final String CONSTRUCTOR = "(Ljava/lang/String;I)V";
+
+	@Test
+	public void reuseInlineStruct() throws IOException {
+		ClassNode node = read(InlineTarget.class);
+		String struct = Type.getInternalName(Inlined.class);
+
+		//Two builders for the same enum can use the same struct, which will need a subclass each
+		assertNotNull(EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$10", CONSTRUCTOR, null));
+		assertNotNull(EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$11", CONSTRUCTOR, null));
+
+		EnumSubclasser.enumDefined(node.name);
+		try {
+			EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$12", CONSTRUCTOR, null);
+			fail("Struct methods should have been let go once the enum was defined");
+		} catch (IllegalStateException e) {
+			//Expected, there's no way another subclass can be made
+		}
+	}
+
+	@Test
+	public void remakeSubclassAfterStructDefined() throws IOException {
+		ClassNode node = read(StructTarget.class);
+		String struct = Type.getInternalName(ChildStruct.class);
+		String parent = Type.getInternalName(ParentStruct.class);
+
+		assertNotNull(EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$10", CONSTRUCTOR, null));
+		ClassNode structNode = read(ChildStruct.class);
+		EnumSubclasser.makeStructFixer(struct, node.name).accept(structNode);
+		assertFalse(structNode.methods.isEmpty());
+
+		//The enum is still being transformed, so a subclass could still need making again (such as a prepared one not matching)
+		assertNotNull(EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$11", CONSTRUCTOR, null));
+
+		EnumSubclasser.enumDefined(node.name);
+		ClassNode parentNode = read(ParentStruct.class);
+		EnumSubclasser.makeStructFixer(parent, node.name).accept(parentNode);
+		assertFalse(parentNode.methods.isEmpty());
+
+		try {
+			EnumSubclasser.defineAnonymousSubclass(node, struct, node.name + "$12", CONSTRUCTOR, null);
+			fail("Struct methods should have been let go once the enum and structs were defined");
+		} catch (IllegalStateException e) {
+			//Expected, there's no way another subclass can be made
+		}
+	}
+
+	private static ClassNode read(Class<?> type) throws IOException {
+		ClassNode node = new ClassNode();
+
+		try (InputStream in = type.getResourceAsStream('/' + Type.getInternalName(type) + ".class")) {
+			new ClassReader(in).accept(node, ClassReader.EXPAND_FRAMES);
+		}
+
+		return node;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeFalse;
+
+import java.lang.reflect.Method;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class GeneratedClassesTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static ClassNode makeClass() {
+		ClassNode node = new ClassNode();
+		node.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Generated", null, "java/lang/Object", null);
+		node.visitSource("Generated.java", null);
+		node.visitAnnotation("Ltest/Invisible;", false).visitEnd();
+		node.visitAnnotation("Ltest/Visible;", true).visitEnd();
+
+		MethodVisitor method = node.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null, null);
+		method.visitAnnotation("Ltest/Invisible;", false).visitEnd();
+		method.visitCode();
+		Label start = new Label(), end = new Label();
+		method.visitLabel(start);
+		method.visitLineNumber(10, start);
+		method.visitInsn(Opcodes.RETURN);
+		method.visitLabel(end);
+		method.visitLocalVariable("this", "Ltest/Generated;", null, start, end, 0);
+		method.visitMaxs(0, 1);
+		method.visitEnd();
+
+		node.visitEnd();
+		return node;
+	}
+
+	private static int countLines(MethodNode method) {
+		int lines = 0;
+		for (AbstractInsnNode insn : method.instructions) {
+			if (insn.getType() == AbstractInsnNode.LINE) lines++;
+		}
+		return lines;
+	}
+
+	@Test
+	public void notLean() {
+		assumeFalse(GeneratedClasses.LEAN);
+
+		ClassNode node = makeClass();
+		GeneratedClasses.strip(node);
+		assertEquals("Generated.java", node.sourceFile);
+		assertEquals(1, node.invisibleAnnotations.size());
+		assertEquals(1, countLines(node.methods.get(0)));
+
+		MethodVisitor visitor = new MethodNode();
+		assertEquals(visitor, GeneratedClasses.strip(visitor));
+	}
+
+	@Test
+	public void lean() throws Exception {
+		//Being lean is decided when GeneratedClasses loads, so needs a fresh copy loading with it turned on
+		Class<?> generatedClasses;
+		System.setProperty("mm.lean", "true");
+		try {
+			ClassLoader loader = new EnumSubclasserStressTest.TransformingLoader(folder.getRoot().toPath());
+			generatedClasses = Class.forName("com.chocohead.mm.GeneratedClasses", true, loader);
+		} finally {
+			System.clearProperty("mm.lean");
+		}
+		Method stripClass = generatedClasses.getDeclaredMethod("strip", ClassNode.class);
+		stripClass.setAccessible(true);
+		Method stripMethod = generatedClasses.getDeclaredMethod("strip", MethodVisitor.class);
+		stripMethod.setAccessible(true);
+
+		ClassNode node = makeClass();
+		stripClass.invoke(null, node);
+		assertNull(node.sourceFile);
+		assertNull(node.invisibleAnnotations);
+		assertEquals(1, node.visibleAnnotations.size());
+
+		MethodNode method = node.methods.get(0);
+		assertNull(method.invisibleAnnotations);
+		assertNull(method.localVariables);
+		assertEquals(0, countLines(method));
+		assertEquals(Opcodes.RETURN, method.instructions.getLast().getPrevious().getOpcode());
+
+		MethodNode visited = new MethodNode(Opcodes.ASM7);
+		MethodVisitor visitor = (MethodVisitor) stripMethod.invoke(null, visited);
+		assertNull(visitor.visitAnnotation("Ltest/Invisible;", false));
+		assertNotNull(visitor.visitAnnotation("Ltest/Visible;", true));
+		assertNull(visitor.visitParameterAnnotation(0, "Ltest/Invisible;", false));
+		assertNull(visited.invisibleAnnotations);
+		assertEquals(1, visited.visibleAnnotations.size());
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoadOrderTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sort() throws IOException {
+		Path file = folder.newFile("load-order.txt").toPath();
+		Files.write(file, Arrays.asList("game/C", "game/A", "game/D", "game/A"), StandardCharsets.UTF_8);
+		LoadOrder.start(file);
+
+		//Anything asked for last time comes first in the same order, the rest keep their order at the end
+		assertEquals(Arrays.asList("game/C", "game/A", "game/D", "game/B", "game/E"), LoadOrder.sort(Arrays.asList("game/B", "game/A", "game/E", "game/D", "game/C")));
+		assertEquals(Arrays.asList("game/A", "game/F"), LoadOrder.sort(Arrays.asList("game/F", "game/A")));
+	}
+}
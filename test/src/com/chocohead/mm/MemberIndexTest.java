@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class MemberIndexTest {
+	private final ClassNode node = new ClassNode();
+
+	public MemberIndexTest() {
+		node.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/Indexed", null, "java/lang/Object", null);
+		for (int i = 0; i < 10; i++) {
+			node.visitMethod(Opcodes.ACC_PRIVATE, "m" + i, "()V", null, null);
+		}
+	}
+
+	@After
+	public void release() {
+		MemberIndex.release(node);
+	}
+
+	@Test
+	public void lookUp() {
+		MemberIndex index = MemberIndex.of(node);
+		assertSame(index, MemberIndex.of(node));
+
+		assertSame(node.methods.get(3), index.getMethod("m3", "()V"));
+		assertNull(index.getMethod("m3", "()I"));
+		assertNull(index.getMethod("missing()V"));
+	}
+
+	@Test
+	public void changedMethods() {
+		MemberIndex index = MemberIndex.of(node);
+		assertNull(index.getMethod("added()V"));
+
+		//Something else adding a method changes the size of the list
+		MethodNode added = (MethodNode) node.visitMethod(Opcodes.ACC_PUBLIC, "added", "()V", null, null);
+		assertSame(added, index.getMethod("added()V"));
+
+		//As does removing one
+		node.methods.remove(0);
+		assertNull(index.getMethod("m0()V"));
+		assertSame(node.methods.get(0), index.getMethod("m1()V"));
+
+		//Moving them around doesn't, but is spotted by the method found not matching
+		Collections.reverse(node.methods);
+		assertSame(node.methods.get(0), index.getMethod("added()V"));
+		assertSame(node.methods.get(1), index.getMethod("m9()V"));
+
+		//Replacing the list is noticed even if the size stays the same
+		node.methods = new ArrayList<>(node.methods.subList(1, node.methods.size()));
+		node.methods.add(new MethodNode(Opcodes.ACC_PUBLIC, "replaced", "()V", null, null));
+		assertSame(node.methods.get(node.methods.size() - 1), index.getMethod("replaced()V"));
+		assertNull(index.getMethod("added()V"));
+	}
+
+	@Test
+	public void addMethod() {
+		MemberIndex index = MemberIndex.of(node);
+		assertNull(index.getMethod("added()V"));
+
+		MethodNode added = new MethodNode(Opcodes.ACC_PUBLIC, "added", "()V", null, null);
+		index.addMethod(added);
+		assertSame(added, index.getMethod("added()V"));
+		assertEquals(11, node.methods.size());
+	}
+
+	@Test
+	public void anonymousClasses() {
+		MemberIndex index = MemberIndex.of(node);
+		assertEquals(0, index.getLastAnonymousClass());
+
+		node.visitInnerClass("test/Indexed$2", null, null, 0);
+		node.visitInnerClass("test/Indexed$Named", "test/Indexed", "Named", Opcodes.ACC_STATIC);
+		node.visitInnerClass("test/Indexed$12", null, null, 0);
+		assertEquals(12, index.getLastAnonymousClass());
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import com.chocohead.mm.EnumSubclasserStressTest.TransformingLoader;
+
+public class OverlayTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void fingerprint() {
+		Map<String, Set<String>> transforms = new HashMap<>();
+		transforms.put("net.minecraft.Foo", new HashSet<>(Arrays.asList("<*>", "bar()V")));
+		transforms.put("net.minecraft.Baz", new HashSet<>(Arrays.asList("<init>()V")));
+
+		//The same access transformers read from different mods in a different order
+		Map<String, Set<String>> reordered = new LinkedHashMap<>();
+		reordered.put("net/minecraft/Baz", new LinkedHashSet<>(Arrays.asList("<init>()V")));
+		reordered.put("net/minecraft/Foo", new LinkedHashSet<>(Arrays.asList("bar()V", "<*>")));
+		assertEquals(Overlay.fingerprint(transforms), Overlay.fingerprint(reordered));
+
+		reordered.get("net/minecraft/Foo").remove("<*>");
+		assertNotEquals(Overlay.fingerprint(transforms), Overlay.fingerprint(reordered));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		Path game = folder.newFile("game.jar").toPath();
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(game))) {
+			ClassWriter writer = new ClassWriter(0);
+			writer.visit(Opcodes.V1_8, 0, "net/minecraft/Foo", null, "java/lang/Object", null);
+			writer.visitEnd();
+
+			out.putNextEntry(new ZipEntry("net/minecraft/Foo.class"));
+			out.write(writer.toByteArray());
+			out.closeEntry();
+		}
+
+		Path mods = folder.newFolder("mods").toPath();
+		Path mod = mods.resolve("mod.jar");
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(mod))) {
+			out.putNextEntry(new ZipEntry("silky.at"));
+			out.write("net.minecraft.Foo\n".getBytes(StandardCharsets.UTF_8)); //Only the class, the most common sort of line
+			out.closeEntry();
+		}
+
+		Path overlay = folder.getRoot().toPath().resolve("overlay.jar");
+		Overlay.main(new String[] {game.toString(), mods.toString(), overlay.toString()});
+
+		//Load MM again with the overlay on the classpath, as the game would have it
+		Method findOverlaid = Class.forName("com.chocohead.mm.Overlay", true, new TransformingLoader(overlay)).getDeclaredMethod("findOverlaid", Map.class);
+		findOverlaid.setAccessible(true);
+
+		//The access transformers are read afresh when the game starts, so have to match those the overlay was made from
+		Map<String, Set<String>> transforms = Plugin.readAT(new URL("jar:" + mod.toUri() + "!/silky.at"));
+		assertEquals(Collections.singleton("net/minecraft/Foo"), findOverlaid.invoke(null, transforms));
+	}
+
+	@Test
+	public void noOverlay() {
+		Map<String, Set<String>> transforms = new HashMap<>();
+		transforms.put("net.minecraft.Foo", new HashSet<>(Arrays.asList("<*>")));
+
+		//Without an overlay on the classpath everything has to be transformed as normal
+		assertEquals(0, Overlay.findOverlaid(transforms).size());
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class UnremovableSetTest {
+	private static void assertUnsupported(Runnable action) {
+		try {
+			action.run();
+			fail("Removal should have been refused");
+		} catch (UnsupportedOperationException e) {
+			//Expected, nothing can be taken out through the view
+		}
+	}
+
+	@Test
+	public void guarded() {
+		Set<String> backing = new HashSet<>();
+		Set<String> view = new UnremovableSet<>(backing);
+		assertTrue(view.add("a"));
+		assertTrue(view.addAll(Collections.singleton("b")));
+
+		assertUnsupported(() -> view.remove("a"));
+		assertUnsupported(() -> view.removeIf(value -> true));
+		assertUnsupported(() -> view.removeAll(Collections.singleton("a")));
+		assertUnsupported(() -> view.retainAll(Collections.emptySet()));
+		assertUnsupported(view::clear);
+		assertUnsupported(() -> {
+			Iterator<String> it = view.iterator();
+			it.next();
+			it.remove();
+		});
+		assertEquals(2, view.size());
+
+		//Whatever owns the backing set can still let things go
+		backing.remove("a");
+		assertEquals(Collections.singleton("b"), view);
+	}
+}
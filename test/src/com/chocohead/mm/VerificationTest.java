@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import com.chocohead.mm.EnumSubclasserStressTest.TransformingLoader;
+import com.chocohead.mm.api.ClassTinkerers;
+import com.chocohead.mm.api.EnumAdder;
+
+public class VerificationTest {
+	/** Registers an enum extension and struct fixer as a mod would, within a copy of MM which is verifying and profiling */
+	static final class Blamed implements Supplier<Set<String>> {
+		@Override
+		public Set<String> get() {
+			EnumAdder builder = ClassTinkerers.enumBuilder("test/Enum").addEnum("ADDED");
+			Consumer<ClassNode> extender = Profiler.profile("Enum extender", EnumExtender.makeEnumExtender(builder));
+			Consumer<ClassNode> fixer = EnumSubclasser.makeStructFixer("test/Struct", "test/Enum");
+
+			return Verification.sourcesOf(Collections.singleton(extender), fixer);
+		}
+	}
+	private static final String TARGET = "test/Verified";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private interface Body {
+		void write(MethodVisitor method);
+	}
+
+	private static byte[] makeClass(int writerFlags, String returnType, Body body) {
+		ClassWriter writer = new ClassWriter(writerFlags);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, TARGET, null, "java/lang/Object", null);
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "get", "()" + returnType, null, null);
+		method.visitCode();
+		body.write(method);
+		method.visitMaxs(1, 1);
+		method.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void blame() throws Exception {
+		//Both are decided when the classes load, so need a fresh copy loading with them turned on
+		Set<String> sources;
+		System.setProperty("mm.verify", "true");
+		System.setProperty("mm.profile", "true");
+		try {
+			Constructor<?> constructor = Class.forName(Blamed.class.getName(), true, new TransformingLoader(folder.getRoot().toPath())).getDeclaredConstructor();
+			constructor.setAccessible(true);
+			sources = ((Supplier<Set<String>>) constructor.newInstance()).get();
+		} finally {
+			System.clearProperty("mm.verify");
+			System.clearProperty("mm.profile");
+		}
+
+		//The replacer comes first, then the enum extension unwrapped from its profiling, rather than blaming either on MM
+		assertEquals(Arrays.asList("test.Struct", Blamed.class.getName()), new ArrayList<>(sources));
+	}
+
+	@Test
+	public void valid() {
+		byte[] bytecode = makeClass(0, "Ljava/lang/Object;", method -> {
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitInsn(Opcodes.ARETURN);
+		});
+
+		assertEquals(Collections.emptyMap(), Verification.check(bytecode, false));
+		assertEquals(Collections.emptyMap(), Verification.check(bytecode, true));
+	}
+
+	@Test
+	public void broken() {
+		Map<String, String> failures = Verification.check(makeClass(0, "I", method -> {
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitInsn(Opcodes.IRETURN);
+		}), false);
+
+		assertEquals(Collections.singleton(TARGET + "#get()I"), failures.keySet());
+		assertNotNull(failures.get(TARGET + "#get()I"));
+	}
+
+	@Test
+	public void wrongMaximums() {
+		//Transformed classes have their maximums worked out again as Mixin would, generated ones are loaded as they are
+		Body body = method -> {
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitInsn(Opcodes.POP);
+			method.visitInsn(Opcodes.ARETURN);
+		};
+
+		assertEquals(Collections.emptyMap(), Verification.check(makeClass(0, "Ljava/lang/Object;", body), true));
+		assertEquals(1, Verification.check(makeClass(0, "Ljava/lang/Object;", body), false).size());
+	}
+
+	@Test
+	public void knownHierarchy() {
+		Map<String, String> failures = Verification.check(makeClass(ClassWriter.COMPUTE_MAXS, "Ljava/lang/Integer;", method -> {
+			method.visitLdcInsn("Not a number");
+			method.visitInsn(Opcodes.ARETURN);
+		}), true);
+
+		assertEquals(Collections.singleton(TARGET + "#get()Ljava/lang/Integer;"), failures.keySet());
+	}
+
+	@Test
+	public void unknownHierarchy() {
+		//Classes which can't be found might well be assignable, so are given the benefit of the doubt
+		Map<String, String> failures = Verification.check(makeClass(ClassWriter.COMPUTE_MAXS, "Lgame/Other;", method -> {
+			method.visitInsn(Opcodes.ACONST_NULL);
+			method.visitTypeInsn(Opcodes.CHECKCAST, "game/Unknown");
+			method.visitInsn(Opcodes.ARETURN);
+		}), true);
+
+		assertEquals(Collections.emptyMap(), failures);
+	}
+}
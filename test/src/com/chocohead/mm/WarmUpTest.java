@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import com.chocohead.mm.WarmUp.Prepared;
+
+public class WarmUpTest {
+	static final class Target {
+		private void secret() {
+		}
+
+		void caller() {
+			secret();
+		}
+	}
+	private static final String TARGET = Type.getInternalName(Target.class);
+
+	private static ClassNode read() throws IOException {
+		ClassNode node = new ClassNode();
+
+		try (InputStream in = WarmUpTest.class.getResourceAsStream('/' + TARGET + ".class")) {
+			new ClassReader(in).accept(node, ClassReader.EXPAND_FRAMES);
+		}
+
+		return node;
+	}
+
+	private static Consumer<ClassNode> makeAT() {
+		return Plugin.makeAT(new HashSet<>(Arrays.asList("<*>", "secret()V")), false);
+	}
+
+	private static void transform(Consumer<ClassNode> transformer, ClassNode node) {
+		transformer.accept(node);
+		MemberIndex.release(node);
+	}
+
+	@Test
+	public void splice() throws IOException {
+		Consumer<ClassNode> transformer = makeAT();
+		Prepared prepared = WarmUp.prepare(TARGET, Collections.singleton(transformer));
+		assertNotNull(prepared);
+
+		ClassNode spliced = read();
+		assertTrue(prepared.matches(spliced));
+		prepared.apply(spliced);
+		assertTrue((spliced.access & Opcodes.ACC_PUBLIC) != 0);
+
+		//Splicing in the prepared changes should leave the class exactly as running the transformer would have done
+		ClassNode expected = read();
+		transform(transformer, expected);
+		assertEquals(expected.access, spliced.access);
+		assertEquals(expected.methods.size(), spliced.methods.size());
+
+		for (int i = 0; i < expected.methods.size(); i++) {
+			MethodNode expectedMethod = expected.methods.get(i);
+			MethodNode splicedMethod = spliced.methods.get(i);
+			assertEquals(expectedMethod.name, splicedMethod.name);
+			assertEquals(expectedMethod.access, splicedMethod.access);
+
+			for (AbstractInsnNode expectedInsn = expectedMethod.instructions.getFirst(), splicedInsn = splicedMethod.instructions.getFirst();
+					expectedInsn != null; expectedInsn = expectedInsn.getNext(), splicedInsn = splicedInsn.getNext()) {
+				assertEquals(expectedInsn.getOpcode(), splicedInsn.getOpcode());
+			}
+		}
+	}
+
+	@Test
+	public void changedClass() throws IOException {
+		Prepared prepared = WarmUp.prepare(TARGET, Collections.singleton(makeAT()));
+		assertNotNull(prepared);
+
+		//Another Mixin adding a method means the prepared changes might not line up any more
+		ClassNode added = read();
+		added.visitMethod(Opcodes.ACC_PRIVATE, "extra", "()V", null, null);
+		assertFalse(prepared.matches(added));
+
+		//As does another transformation having already changed the access
+		ClassNode widened = read();
+		for (MethodNode method : widened.methods) {
+			if ("secret".equals(method.name)) method.access = Opcodes.ACC_PROTECTED;
+		}
+		assertFalse(prepared.matches(widened));
+	}
+
+	@Test
+	public void notPrepared() throws IOException {
+		WarmUp warmUp = new WarmUp();
+		Consumer<ClassNode> transformer = makeAT();
+		warmUp.add(TARGET, transformer, transformer);
+
+		//Until the warm up has started (and finished) there's nothing to splice, so everything has to be run normally
+		ClassNode node = read();
+		assertEquals(Collections.emptySet(), warmUp.splice(TARGET, node));
+		assertEquals(read().access, node.access);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.fabricmc.loader.api.MappingResolver;
+
+public class CachedMappingsTest {
+	private final List<String> mapped = new ArrayList<>();
+	private int lookups;
+	private CachedMappings mappings;
+
+	@Before
+	public void makeMappings() {
+		MappingResolver resolver = (MappingResolver) Proxy.newProxyInstance(CachedMappingsTest.class.getClassLoader(), new Class<?>[] {MappingResolver.class}, (proxy, method, args) -> {
+			assertEquals("intermediary", args[0]);
+
+			switch (method.getName()) {
+			case "mapClassName":
+				mapped.add((String) args[1]);
+				return ((String) args[1]).replace("class_", "Mapped");
+
+			case "mapMethodName":
+				mapped.add(args[1] + " " + args[2] + ' ' + args[3]);
+				return "method " + args[2];
+
+			case "mapFieldName":
+				mapped.add(args[1] + " " + args[2] + ' ' + args[3]);
+				return "field " + args[2];
+
+			default:
+				throw new UnsupportedOperationException("Unexpectedly called " + method);
+			}
+		});
+
+		mappings = new CachedMappings(() -> {
+			lookups++;
+			return resolver;
+		});
+	}
+
+	@Test
+	public void mapClass() {
+		assertEquals("net/minecraft/Mapped1001", mappings.mapClass("net.minecraft.class_1001"));
+		assertEquals("net/minecraft/Mapped1001", mappings.mapClass("net/minecraft/class_1001"));
+		assertArrayEquals(new String[] {"net/minecraft/Mapped1002", "net/minecraft/Mapped1001"}, mappings.mapClasses("net.minecraft.class_1002", "net/minecraft/class_1001"));
+
+		//However a name is given, and however many times, it is only mapped once (with dots as the resolver expects)
+		assertEquals(Arrays.asList("net.minecraft.class_1001", "net.minecraft.class_1002"), mapped);
+		assertEquals("The resolver should only be needed for names which haven't been mapped yet", 2, lookups);
+	}
+
+	@Test
+	public void mapMembers() {
+		assertEquals("method member_2001", mappings.mapMethod("net.minecraft.class_2001", "member_2001", "()V"));
+		assertEquals("method member_2001", mappings.mapMethod("net/minecraft/class_2001", "member_2001", "()V"));
+		assertEquals("method member_2001", mappings.mapMethod("net/minecraft/class_2001", "member_2001", "(I)V"));
+		assertEquals("field member_2001", mappings.mapField("net.minecraft.class_2001", "member_2001", "I"));
+		assertEquals("field member_2001", mappings.mapField("net/minecraft/class_2001", "member_2001", "I"));
+
+		//Methods and fields are each only mapped once, without mixing up a method and field of the same name
+		assertEquals(Arrays.asList("net.minecraft.class_2001 member_2001 ()V", "net.minecraft.class_2001 member_2001 (I)V",
+				"net.minecraft.class_2001 member_2001 I"), mapped);
+	}
+
+	@Test
+	public void nothingMapped() {
+		assertArrayEquals(new String[0], mappings.mapClasses());
+
+		//Nothing should be asked of Fabric Loader until there is actually something to map
+		assertEquals(Collections.emptyList(), mapped);
+		assertEquals(0, lookups);
+	}
+}
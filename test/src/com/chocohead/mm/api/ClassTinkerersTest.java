@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+public class ClassTinkerersTest {
+	static final class Inspected {
+		void first() {
+			System.out.println("Not run");
+		}
+
+		void second() {
+		}
+	}
+	/** Collects the methods the class has, and whether any of their code was read */
+	private static final class Inspector extends ClassVisitor {
+		final List<String> methods = new ArrayList<>();
+		boolean sawCode;
+
+		Inspector() {
+			super(Opcodes.ASM7);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+			methods.add(name + descriptor);
+
+			return new MethodVisitor(Opcodes.ASM7) {
+				@Override
+				public void visitCode() {
+					sawCode = true;
+				}
+			};
+		}
+	}
+
+	@Test
+	public void inspect() {
+		Inspector inspector = new Inspector();
+		assertTrue(ClassTinkerers.addInspector(Inspected.class.getName(), inspector));
+
+		assertTrue(inspector.methods.containsAll(Arrays.asList("first()V", "second()V")));
+		assertFalse("Inspectors shouldn't be given any code", inspector.sawCode);
+	}
+
+	@Test
+	public void inspectDefined() {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/inspected/Defined", null, Type.getInternalName(Object.class), null);
+		writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "defined", "()V", null, null).visitEnd();
+		writer.visitEnd();
+		assertTrue(ClassTinkerers.define("test.inspected.Defined", writer.toByteArray()));
+
+		//Classes MM is going to define can be inspected before they are
+		Inspector inspector = new Inspector();
+		assertTrue(ClassTinkerers.addInspector("test/inspected/Defined", inspector));
+		assertEquals(Arrays.asList("defined()V"), inspector.methods);
+	}
+
+	@Test
+	public void inspectMissing() {
+		Inspector inspector = new Inspector();
+		assertFalse(ClassTinkerers.addInspector("test/inspected/Missing", inspector));
+		assertTrue(inspector.methods.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void inspectNull() {
+		ClassTinkerers.addInspector("test/inspected/Missing", null);
+	}
+}
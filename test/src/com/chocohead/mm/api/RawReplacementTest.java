@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Chocohead
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.chocohead.mm.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+public class RawReplacementTest {
+	private static final String TARGET = "test/Replaced";
+
+	private static void write(ClassVisitor visitor, String name, String superName, String method) {
+		visitor.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, name, null, superName, null);
+		visitor.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, method, "()V", null, null).visitEnd();
+		visitor.visitEnd();
+	}
+
+	private static byte[] write(String name, String superName, String method) {
+		ClassWriter writer = new ClassWriter(0);
+		write(writer, name, superName, method);
+		return writer.toByteArray();
+	}
+
+	/** The class as Mixin would have it before any replacement */
+	private static ClassNode makeOriginal() {
+		ClassNode node = new ClassNode();
+		write(node, TARGET, "java/lang/Object", "original");
+		node.visitSource("Replaced.java", null);
+		node.interfaces.add("java/lang/Runnable");
+		node.visitField(Opcodes.ACC_PRIVATE, "field", "I", null, null).visitEnd();
+		return node;
+	}
+
+	private static List<String> methods(ClassNode node) {
+		return node.methods.stream().map(method -> method.name + method.desc).collect(Collectors.toList());
+	}
+
+	@Test
+	public void replaceWithBytes() {
+		ClassNode node = makeOriginal();
+		new RawReplacement(TARGET, write(TARGET, "java/lang/Object", "replaced")).accept(node);
+
+		//Nothing of the original should be left behind
+		assertEquals(Arrays.asList("replaced()V"), methods(node));
+		assertEquals(Collections.emptyList(), node.interfaces);
+		assertEquals(Collections.emptyList(), node.fields);
+		assertNull(node.sourceFile);
+	}
+
+	@Test
+	public void replaceWithGenerator() {
+		ClassNode node = makeOriginal();
+		new RawReplacement(TARGET, visitor -> write(visitor, TARGET, "java/lang/Object", "generated")).accept(node);
+
+		assertEquals(Arrays.asList("generated()V"), methods(node));
+		assertEquals(Collections.emptyList(), node.interfaces);
+		assertEquals(Collections.emptyList(), node.fields);
+	}
+
+	@Test
+	public void wrongBytes() {
+		ClassNode node = makeOriginal();
+
+		try {
+			new RawReplacement(TARGET, write("test/Other", "java/lang/Object", "replaced")).accept(node);
+			fail("Replacement with a different name should have been refused");
+		} catch (IllegalStateException e) {
+			//Expected, Mixin already has a ClassInfo for the original name
+		}
+
+		try {
+			new RawReplacement(TARGET, write(TARGET, "java/lang/Thread", "replaced")).accept(node);
+			fail("Replacement with a different super class should have been refused");
+		} catch (IllegalStateException e) {
+			//Expected, Mixin already has a ClassInfo for the original super class
+		}
+
+		//The header is checked before anything is cleared, so the original is left as it was
+		assertEquals(Arrays.asList("original()V"), methods(node));
+		assertEquals(Arrays.asList("java/lang/Runnable"), node.interfaces);
+		assertEquals("Replaced.java", node.sourceFile);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void wrongGenerator() {
+		new RawReplacement(TARGET, visitor -> write(visitor, TARGET, "java/lang/Thread", "generated")).accept(makeOriginal());
+	}
+}